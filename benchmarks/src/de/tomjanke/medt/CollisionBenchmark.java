@@ -0,0 +1,69 @@
+package de.tomjanke.medt;
+
+import com.badlogic.gdx.math.Rectangle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of testing every bird of a population against the current pipe
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    @Param({"20", "1000", "100000"})
+    public int birdCount;
+
+    private float[] birds;
+    private Rectangle birdRect, pipeRectU, pipeRectL;
+    private float upperBottom, upperTop, lowerBottom, lowerTop;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        birds = new float[birdCount];
+        for (int i = 0; i < birdCount; i++)
+            birds[i] = 100 + random.nextFloat() * 320;
+
+        // The pipe overlaps the birds horizontally, which is the expensive case
+        float pipeX = 90, height = 300;
+        birdRect = new Rectangle();
+        pipeRectU = new Rectangle(pipeX, height + FlappySimulation.HALF_PIPE_HEIGHT, 52, 320);
+        pipeRectL = new Rectangle(pipeX, height - FlappySimulation.HALF_PIPE_HEIGHT - 320, 52, 320);
+        upperBottom = pipeRectU.y;
+        upperTop = upperBottom + 320;
+        lowerBottom = pipeRectL.y;
+        lowerTop = lowerBottom + 320;
+    }
+
+    @Benchmark
+    public int overlaps() {
+        int hits = 0;
+        for (float bird : birds) {
+            birdRect.set(100, bird - 12, 34, 24);
+            if (birdRect.overlaps(pipeRectL) || birdRect.overlaps(pipeRectU)) hits++;
+        }
+        return hits;
+    }
+
+    /**
+     * The batched test of {@link FlappySimulation}: the horizontal overlap is checked once per tick,
+     * every bird is only compared with the vertical bounds of both pipe halves
+     */
+    @Benchmark
+    public int gap() {
+        int hits = 0;
+        for (float bird : birds) {
+            float bottom = bird - 12,
+                    top = bottom + 24;
+            if (bottom < upperTop & top > upperBottom | bottom < lowerTop & top > lowerBottom) hits++;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,55 @@
+package de.tomjanke.medt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single network: forward pass, averaging and mutation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralNetBenchmark {
+
+    @Param({"4,5,1", "4,16,16,1"})
+    public String topology;
+
+    private Random random;
+    private NeuralNet net, other;
+    private float[] input;
+
+    @Setup
+    public void setup() {
+        random = new Random(42);
+        Topology layout = Topology.parse(topology, "tanh");
+        net = new NeuralNet(layout, random);
+        other = new NeuralNet(layout, random);
+        input = new float[]{256, 300, 100, -1};
+    }
+
+    @Benchmark
+    public float activate() {
+        return net.activate(input);
+    }
+
+    @Benchmark
+    public NeuralNet breed() {
+        return net.breed(other);
+    }
+
+    @Benchmark
+    public NeuralNet mutationConstructor() {
+        return new NeuralNet(other, .3f, random);
+    }
+
+    @Benchmark
+    public NeuralNet inherit() {
+        net.inherit(other, .3f, random);
+        return net;
+    }
+}
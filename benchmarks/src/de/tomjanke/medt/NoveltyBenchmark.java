@@ -0,0 +1,64 @@
+package de.tomjanke.medt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a nearest neighbour query of the novelty search as the archive grows
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class NoveltyBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int archiveSize;
+
+    @Param({"15"})
+    public int neighbors;
+
+    private KdTree tree;
+    private KdTree.Neighbors nearest;
+    private float[] queries;
+    private int query;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        float[] points = new float[archiveSize * Novelty.SAMPLES];
+        for (int i = 0; i < archiveSize; i++)
+            flight(random, points, i * Novelty.SAMPLES);
+        tree = new KdTree(Novelty.SAMPLES);
+        tree.build(points, archiveSize);
+        nearest = new KdTree.Neighbors(neighbors);
+        queries = new float[1024 * Novelty.SAMPLES];
+        for (int i = 0; i < 1024; i++)
+            flight(random, queries, i * Novelty.SAMPLES);
+    }
+
+    /**
+     * A smooth random flight relative to the gaps that may end with a crash
+     */
+    private static void flight(Random random, float[] points, int offset) {
+        float height = random.nextFloat() * 600 - 300,
+                velocity = random.nextFloat() * 20 - 10;
+        int crash = random.nextInt(2 * Novelty.SAMPLES);
+        for (int s = 0; s < Novelty.SAMPLES; s++) {
+            height += velocity + random.nextFloat() * 10 - 5;
+            points[offset + s] = s < crash ? height : Novelty.DEAD;
+        }
+    }
+
+    @Benchmark
+    public float nearest() {
+        nearest.clear();
+        tree.nearest(queries, query * Novelty.SAMPLES, nearest, -1);
+        query = (query + 1) & 1023;
+        return nearest.mean();
+    }
+}
@@ -0,0 +1,82 @@
+package de.tomjanke.medt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generations and wall time until a population reaches a score, for every {@link Selection}.
+ * Every iteration trains a fresh population with another seed, the average generations are printed after each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SelectionBenchmark {
+
+    /**
+     * Training is given up after this many generations
+     */
+    private static final int MAX_GENERATIONS = 500;
+
+    @Param({"LEGACY", "TOURNAMENT", "RANK", "PROPORTIONAL"})
+    public Selection selection;
+
+    @Param({"UNIFORM", "ARITHMETIC"})
+    public Crossover crossover;
+
+    @Param({"false", "true"})
+    public boolean adaptiveMutation;
+
+    @Param({"200"})
+    public int birdCount;
+
+    @Param({"50"})
+    public int targetScore;
+
+    private long seed;
+    private FlappySimulation simulation;
+
+    private int runs,
+            reached,
+            generations;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        FlappyConfiguration config = new FlappyConfiguration();
+        config.birdCount = birdCount;
+        config.seed = seed++;
+        config.selection = selection;
+        config.crossover = crossover;
+        config.adaptiveMutation = adaptiveMutation;
+        config.elitism = 4;
+        // The generation that reaches the target ends right there, instead of flying on
+        config.maxScore = targetScore;
+        simulation = new FlappySimulation(config);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        runs++;
+        if (simulation.getLastScore() >= targetScore) reached++;
+        generations += simulation.getGeneration() - 1;
+        simulation.dispose();
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        // Single shot benchmarks have no extra counters, so the generations are printed with the output of the fork
+        System.out.printf("%n%.1f generations to %d P on average, %d of %d runs reached it%n",
+                (double) generations / runs, targetScore, reached, runs);
+    }
+
+    @Benchmark
+    public int toTargetScore() {
+        do {
+            simulation.fastForward();
+        } while (simulation.getLastScore() < targetScore && simulation.getGeneration() <= MAX_GENERATIONS);
+        return simulation.getLastScore();
+    }
+}
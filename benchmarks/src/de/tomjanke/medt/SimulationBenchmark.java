@@ -0,0 +1,55 @@
+package de.tomjanke.medt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the bird loop of {@link FlappySimulation} at several population sizes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark {
+
+    @Param({"20", "1000", "20000"})
+    public int birdCount;
+
+    @Param({"1"})
+    public int threads;
+
+    @Param({"FLOAT", "INT16", "INT8"})
+    public Precision precision;
+
+    private FlappySimulation simulation;
+
+    @Setup
+    public void setup() {
+        FlappyConfiguration config = new FlappyConfiguration();
+        config.birdCount = birdCount;
+        config.threads = threads;
+        config.seed = 42;
+        config.precision = precision;
+        // Good birds can survive forever, so a generation is cut off after one minute of game time
+        config.maxTicks = 3600;
+        simulation = new FlappySimulation(config);
+    }
+
+    @TearDown
+    public void tearDown() {
+        simulation.dispose();
+    }
+
+    @Benchmark
+    public boolean step() {
+        return simulation.step();
+    }
+
+    @Benchmark
+    public int generation() {
+        return simulation.fastForward();
+    }
+}
@@ -0,0 +1,71 @@
+package de.tomjanke.medt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forward pass of a whole population: every network on its own, the batched plain loop and the batched Vector API.
+ * The Vector API needs the <tt>vector</tt> module and <tt>--add-modules jdk.incubator.vector</tt>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class VectorBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int birdCount;
+
+    @Param({"4,5,1", "4,8,8,1"})
+    public String topology;
+
+    private NeuralNet[] networks;
+    private float[] input;
+    private PopulationEvaluator scalar,
+            vector;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        Topology layout = Topology.parse(topology, "tanh");
+        ForwardKernel kernel = ForwardKernel.vector();
+        networks = new NeuralNet[birdCount];
+        scalar = new PopulationEvaluator(birdCount, layout);
+        vector = kernel != null ? new PopulationEvaluator(birdCount, layout, Precision.FLOAT, kernel) : null;
+        input = new float[]{256, 300, 100, -1};
+        for (int i = 0; i < birdCount; i++) {
+            networks[i] = new NeuralNet(layout, random);
+            scalar.pack(i, networks[i]);
+            if (vector != null) vector.pack(i, networks[i]);
+            for (int j = 0; j < input.length; j++) {
+                scalar.setInput(i, j, input[j]);
+                if (vector != null) vector.setInput(i, j, input[j]);
+            }
+        }
+    }
+
+    @Benchmark
+    public float activate() {
+        float sum = 0;
+        for (NeuralNet network : networks)
+            sum += network.activate(input);
+        return sum;
+    }
+
+    @Benchmark
+    public float scalar() {
+        scalar.evaluate(0, birdCount);
+        return scalar.getOutput(birdCount - 1);
+    }
+
+    @Benchmark
+    public float vector() {
+        if (vector == null) throw new IllegalStateException("The Vector API is not available");
+        vector.evaluate(0, birdCount);
+        return vector.getOutput(birdCount - 1);
+    }
+}
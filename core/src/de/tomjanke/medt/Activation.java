@@ -0,0 +1,73 @@
+package de.tomjanke.medt;
+
+/**
+ * Activation functions of a layer. The curved ones use fast rational approximations instead of {@link Math#exp(double)}.
+ */
+public enum Activation {
+
+    /**
+     * No activation, the layer stays linear
+     */
+    IDENTITY,
+
+    /**
+     * Rectified linear unit: <tt>max(0, x)</tt>
+     */
+    RELU,
+
+    /**
+     * Hyperbolic tangent, approximated with a Padé approximant that is exact at 0 and saturates at ±3
+     */
+    TANH,
+
+    /**
+     * Logistic function, derived from {@link #TANH}: <tt>(1 + tanh(x / 2)) / 2</tt>
+     */
+    SIGMOID;
+
+    /**
+     * Applies the function to a single value
+     */
+    public float apply(float x) {
+        switch (this) {
+            case RELU:
+                return x > 0 ? x : 0;
+            case TANH:
+                return tanh(x);
+            case SIGMOID:
+                return .5f + .5f * tanh(.5f * x);
+            default:
+                return x;
+        }
+    }
+
+    /**
+     * Applies the function to <tt>values[from]</tt> (inclusive) to <tt>values[to]</tt> (exclusive) in place.
+     * The switch stays outside of the loops, so each loop can be vectorized.
+     */
+    public void apply(float[] values, int from, int to) {
+        switch (this) {
+            case RELU:
+                for (int i = from; i < to; i++)
+                    values[i] = values[i] > 0 ? values[i] : 0;
+                break;
+            case TANH:
+                for (int i = from; i < to; i++)
+                    values[i] = tanh(values[i]);
+                break;
+            case SIGMOID:
+                for (int i = from; i < to; i++)
+                    values[i] = .5f + .5f * tanh(.5f * values[i]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static float tanh(float x) {
+        if (x <= -3) return -1;
+        if (x >= 3) return 1;
+        float x2 = x * x;
+        return x * (27 + x2) / (27 + 9 * x2);
+    }
+}
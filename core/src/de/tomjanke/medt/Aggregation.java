@@ -0,0 +1,17 @@
+package de.tomjanke.medt;
+
+/**
+ * How the fitness of a network on several courses is combined, see {@link FlappyConfiguration#courses}
+ */
+public enum Aggregation {
+
+    /**
+     * The average fitness, rounded down
+     */
+    MEAN,
+
+    /**
+     * The fitness on the hardest course, which favors networks that never fail
+     */
+    MIN
+}
@@ -0,0 +1,279 @@
+package de.tomjanke.medt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot of the weights of a whole population.
+ * <p>
+ * Format (little-endian): a header with the magic <tt>NFCK</tt>, version, network count, generation, fitness, seed,
+ * a CRC32 and the encoded {@link Topology}, followed by the contiguous weights of every network. The CRC32 covers the
+ * whole file with the CRC32 itself zeroed, so a corrupted header or topology is detected as well as corrupted weights.
+ * Version 1 checkpoints of the original 4-5-1 network, like the one shipped with the game, can still be read.
+ * They start with the bytes <tt>KCFN</tt>, store input and hidden count in front of the other fields
+ * and only cover the weights with their CRC32.
+ * Large files are read through a memory mapping, so loading a large population does not copy it twice.
+ * The mapping stays until the checkpoint is garbage collected, and until then Windows refuses to replace the file.
+ */
+public class Checkpoint {
+
+    /**
+     * The bytes <tt>NFCK</tt> read as a little-endian int
+     */
+    private static final int MAGIC = 0x4B43464E;
+
+    /**
+     * Magic of version 1, which wrote <tt>NFCK</tt> as a little-endian int and so reversed the bytes
+     */
+    private static final int LEGACY_MAGIC = 0x4E46434B;
+    private static final int VERSION = 2;
+    private static final int CRC = 28;
+    private static final int TOPOLOGY = 32;
+
+    /**
+     * Files up to this size are copied onto the heap, larger ones are mapped
+     */
+    private static final long MAPPED = 64 << 20;
+
+    private final ByteBuffer buffer;
+    private final Topology topology;
+
+    /**
+     * Offset of the common header fields, version 1 stored two more fields in front of them
+     */
+    private final int fields;
+
+    /**
+     * Offset of the weights
+     */
+    private final int payload;
+
+    private Checkpoint(ByteBuffer buffer, Topology topology, int fields, int payload) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.topology = topology;
+        this.fields = fields;
+        this.payload = payload;
+    }
+
+    /**
+     * Takes a snapshot of the population of a simulation
+     *
+     * @param simulation The simulation
+     * @return The snapshot
+     * @throws IllegalArgumentException If the population does not fit into a single buffer of 2 GiB
+     */
+    public static Checkpoint of(FlappySimulation simulation) {
+        Topology topology = simulation.getTopology();
+        int payload = TOPOLOGY + 4 * topology.encode().length;
+        long size = payload + 4L * topology.getWeightCount() * simulation.getBirdCount();
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The population is too large for a checkpoint (" + size + " bytes)");
+        Checkpoint checkpoint = new Checkpoint(ByteBuffer.allocate((int) size), topology, 0, payload);
+        checkpoint.capture(simulation);
+        return checkpoint;
+    }
+
+    /**
+     * Overwrites this snapshot with the current population of a simulation of the same size
+     *
+     * @param simulation The simulation
+     */
+    void capture(FlappySimulation simulation) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, simulation.getBirdCount());
+        buffer.putInt(12, simulation.getGeneration());
+        buffer.putInt(16, simulation.getLastFitness());
+        buffer.putLong(20, simulation.getSeed());
+
+        int position = TOPOLOGY;
+        for (int v : topology.encode()) {
+            buffer.putInt(position, v);
+            position += 4;
+        }
+        for (int i = 0; i < simulation.getBirdCount(); i++)
+            for (float v : simulation.getNetwork(i).getWeights()) {
+                buffer.putFloat(position, v);
+                position += 4;
+            }
+        buffer.putInt(CRC, checksum(buffer, 0, CRC));
+    }
+
+    /**
+     * Writes this snapshot to a temporary file and renames it, so the file is never left half written
+     *
+     * @param file The file
+     * @throws IOException If the file could not be written
+     */
+    public void write(File file) throws IOException {
+        Path target = file.toPath().toAbsolutePath(),
+                temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = buffer.duplicate();
+            data.clear();
+            while (data.hasRemaining())
+                channel.write(data);
+            channel.force(true);
+        }
+        try {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // On Windows a file that is still mapped by a loaded checkpoint cannot be replaced
+            Files.deleteIfExists(temp);
+            throw new IOException("Could not replace " + file + ", it may still be in use", e);
+        }
+    }
+
+    /**
+     * Reads a checkpoint file, a large one is mapped into memory
+     *
+     * @param file The file
+     * @return The checkpoint
+     * @throws IOException If the file could not be read or is no valid checkpoint
+     */
+    public static Checkpoint read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("The checkpoint is too large");
+            if (size > MAPPED) return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining())
+                if (channel.read(buffer) < 0) throw new IOException("The checkpoint is truncated");
+            buffer.clear();
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Reads a checkpoint from memory, e.g. from an internal asset
+     *
+     * @param buffer The content of a checkpoint file
+     * @return The checkpoint
+     * @throws IOException If the buffer contains no valid checkpoint
+     */
+    public static Checkpoint read(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int magic = buffer.capacity() >= 40 ? buffer.getInt(0) : 0;
+        if (magic != MAGIC && magic != LEGACY_MAGIC) throw new IOException("This is no checkpoint");
+
+        Checkpoint checkpoint;
+        int version = buffer.getInt(4);
+        if (magic == LEGACY_MAGIC && version == 1) {
+            Topology topology = new Topology(new int[]{buffer.getInt(8), buffer.getInt(12), 1}, Activation.IDENTITY, Activation.IDENTITY);
+            checkpoint = new Checkpoint(buffer, topology, 8, 40);
+        } else if (magic == MAGIC && version == VERSION) {
+            int layers = buffer.getInt(TOPOLOGY);
+            if (layers < 2 || buffer.capacity() < TOPOLOGY + 4L * (layers + 3)) throw new IOException("The checkpoint is truncated");
+            int[] code = new int[layers + 3];
+            for (int i = 0; i < code.length; i++)
+                code[i] = buffer.getInt(TOPOLOGY + 4 * i);
+            try {
+                checkpoint = new Checkpoint(buffer, Topology.decode(code), 0, TOPOLOGY + 4 * code.length);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("The checkpoint contains an invalid topology", e);
+            }
+        } else throw new IOException("Unsupported checkpoint version " + version);
+
+        int weights = checkpoint.topology.getWeightCount();
+        if (checkpoint.getBirdCount() < 1 || buffer.capacity() != checkpoint.payload + 4L * weights * checkpoint.getBirdCount())
+            throw new IOException("The checkpoint is truncated");
+        int crc = version == 1 ? checksum(buffer, checkpoint.payload, -1) : checksum(buffer, 0, CRC);
+        if (buffer.getInt(checkpoint.fields + CRC) != crc) throw new IOException("The checkpoint is corrupted");
+        return checkpoint;
+    }
+
+    /**
+     * @param offset Offset of the first byte that is covered
+     * @param field  Offset of the CRC32 field, which is counted as zero, or <tt>-1</tt> if it is in front of <tt>offset</tt>
+     * @return CRC32 of the buffer from <tt>offset</tt> to its end
+     */
+    private static int checksum(ByteBuffer buffer, int offset, int field) {
+        ByteBuffer data = buffer.duplicate();
+        data.clear();
+        CRC32 crc = new CRC32();
+        if (field >= offset) {
+            data.position(offset);
+            data.limit(field);
+            crc.update(data);
+            for (int i = 0; i < 4; i++)
+                crc.update(0);
+            data.limit(data.capacity());
+            offset = field + 4;
+        }
+        data.position(offset);
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Copies the weights of one network of the snapshot
+     *
+     * @param index Index of the network
+     * @param net   The network to overwrite, it must have the topology of the snapshot
+     */
+    void get(int index, NeuralNet net) {
+        float[] weights = net.getWeights();
+        ByteBuffer data = buffer.duplicate();
+        data.clear();
+        FloatBuffer floats = data.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        floats.position(payload / 4 + index * weights.length);
+        floats.get(weights);
+    }
+
+    /**
+     * Continues the saved run in a simulation. If the population sizes differ,
+     * the population is seeded with mutations of the first saved network instead.
+     *
+     * @param simulation The simulation
+     * @throws IllegalArgumentException If the simulation uses another topology than the snapshot
+     */
+    public void restore(FlappySimulation simulation) {
+        if (!topology.equals(simulation.getTopology()))
+            throw new IllegalArgumentException("The checkpoint was saved with the topology " + topology);
+        if (getBirdCount() == simulation.getBirdCount()) {
+            NeuralNet network = new NeuralNet(topology);
+            for (int i = 0; i < getBirdCount(); i++) {
+                get(i, network);
+                simulation.setNetwork(i, network);
+            }
+            simulation.restore(getSeed(), getGeneration());
+        } else {
+            NeuralNet network = new NeuralNet(topology);
+            get(0, network);
+            simulation.seed(network, getGeneration());
+        }
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public int getBirdCount() {
+        return buffer.getInt(fields + 8);
+    }
+
+    public int getGeneration() {
+        return buffer.getInt(fields + 12);
+    }
+
+    /**
+     * @return Fitness of the best bird of the generation before the snapshot
+     */
+    public int getFitness() {
+        return buffer.getInt(fields + 16);
+    }
+
+    public long getSeed() {
+        return buffer.getLong(fields + 20);
+    }
+}
@@ -0,0 +1,153 @@
+package de.tomjanke.medt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves {@link Checkpoint}s of a simulation in the background.
+ * <p>
+ * The population is copied into one of two snapshot buffers on the simulation thread,
+ * while a writer thread saves the other one. If both buffers are still busy, the checkpoint is postponed until one
+ * is free, so the simulation never waits for the disk. Closing the writer saves the final state of the population.
+ */
+public class CheckpointWriter implements Closeable {
+
+    private final File file;
+    private final FlappySimulation simulation;
+    private final int generations;
+    private final long interval;
+
+    private final ArrayBlockingQueue<Checkpoint> free = new ArrayBlockingQueue<>(2),
+            full = new ArrayBlockingQueue<>(2);
+    private final Thread writer;
+
+    private volatile boolean running = true;
+    private volatile int written;
+    private volatile IOException error;
+
+    private int steps,
+            lastGeneration,
+            savedGeneration;
+    private long lastSave;
+    private boolean pending;
+
+    /**
+     * @param file        File to save the checkpoints to
+     * @param simulation  Simulation to save
+     * @param generations Number of generations between two checkpoints, 0 to disable
+     * @param seconds     Number of seconds between two checkpoints, 0 to disable
+     */
+    public CheckpointWriter(File file, FlappySimulation simulation, int generations, float seconds) {
+        this.file = file;
+        this.simulation = simulation;
+        this.generations = generations;
+        this.interval = (long) (seconds * 1e9);
+
+        free.add(Checkpoint.of(simulation));
+        free.add(Checkpoint.of(simulation));
+
+        lastGeneration = savedGeneration = simulation.getGeneration();
+        lastSave = System.nanoTime();
+
+        writer = new Thread(this::write, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Saves a checkpoint if one is due, must be called on the simulation thread after every step
+     */
+    public void update() {
+        // A postponed checkpoint is taken as soon as a buffer is free
+        boolean due = pending;
+        int generation = simulation.getGeneration();
+        if (generation != lastGeneration) {
+            lastGeneration = generation;
+            if (generations > 0 && generation - savedGeneration >= generations) due = true;
+        }
+        // Looking at the clock every step would cost more than the step itself
+        if (interval > 0 && (++steps & 1023) == 0 && System.nanoTime() - lastSave >= interval) due = true;
+        if (due) save();
+    }
+
+    /**
+     * Takes a snapshot of the population now and saves it in the background
+     *
+     * @return <tt>false</tt> if the writer is still busy with both buffers, the checkpoint is then taken by a later
+     * {@link #update()} or by {@link #close()}
+     */
+    public boolean save() {
+        Checkpoint checkpoint = free.poll();
+        pending = checkpoint == null;
+        if (pending) return false;
+
+        savedGeneration = simulation.getGeneration();
+        lastSave = System.nanoTime();
+        checkpoint.capture(simulation);
+        full.add(checkpoint);
+        return true;
+    }
+
+    private void write() {
+        while (running || !full.isEmpty()) {
+            try {
+                Checkpoint checkpoint = full.poll(100, TimeUnit.MILLISECONDS);
+                if (checkpoint == null) continue;
+                try {
+                    checkpoint.write(file);
+                    written++;
+                    error = null;
+                } catch (IOException e) {
+                    error = e;
+                }
+                free.add(checkpoint);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Number of checkpoints that were written so far
+     */
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * @return The error of the last checkpoint the writer thread saved or <tt>null</tt> if it was written
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Waits until the pending checkpoints are written and stops the writer thread.
+     * With periodic checkpoints, or if a checkpoint was postponed, the current population is saved as well.
+     * Must be called on the simulation thread, or after it has stopped.
+     *
+     * @throws IOException If the last checkpoint could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The writer thread has returned every buffer, so the final snapshot is written right here
+        if (pending || generations > 0 || interval > 0) {
+            Checkpoint checkpoint = free.poll();
+            checkpoint.capture(simulation);
+            checkpoint.write(file);
+            written++;
+            pending = false;
+            error = null;
+        }
+        if (error != null) throw error;
+    }
+}
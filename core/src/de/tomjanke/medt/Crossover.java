@@ -0,0 +1,41 @@
+package de.tomjanke.medt;
+
+import java.util.Random;
+
+/**
+ * How the weights of two parents are combined into a child
+ */
+public enum Crossover {
+
+    /**
+     * Every weight is taken from one of the parents with equal chance
+     */
+    UNIFORM,
+
+    /**
+     * The child is a random point on the line between the parents, the same for all weights
+     */
+    ARITHMETIC;
+
+    /**
+     * Combines two parents into a child
+     *
+     * @param a      Weights of the first parent
+     * @param b      Weights of the second parent
+     * @param child  Weights of the child, overwritten
+     * @param random Source of the choices
+     */
+    void apply(float[] a, float[] b, float[] child, Random random) {
+        switch (this) {
+            case UNIFORM:
+                for (int i = 0; i < child.length; i++)
+                    child[i] = random.nextBoolean() ? a[i] : b[i];
+                break;
+            case ARITHMETIC:
+                float t = random.nextFloat();
+                for (int i = 0; i < child.length; i++)
+                    child[i] = a[i] * t + b[i] * (1 - t);
+                break;
+        }
+    }
+}
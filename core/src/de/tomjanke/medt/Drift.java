@@ -0,0 +1,80 @@
+package de.tomjanke.medt;
+
+/**
+ * Collects how far the decisions of a quantized population drift from the float path of the same networks,
+ * see {@link FlappySimulation#measureDrift(Drift)}
+ */
+public class Drift {
+
+    /**
+     * Flipped decisions of every bird
+     */
+    private final int[] flips;
+
+    private long decisions,
+            flipped;
+    private double errorSum;
+    private float maxError;
+
+    public Drift(int birdCount) {
+        flips = new int[birdCount];
+    }
+
+    /**
+     * Compares one decision
+     *
+     * @param bird      Index of the bird
+     * @param exact     Output of the float path
+     * @param quantized Output of the quantized path
+     */
+    void add(int bird, float exact, float quantized) {
+        float error = Math.abs(exact - quantized);
+        decisions++;
+        errorSum += error;
+        if (error > maxError) maxError = error;
+        if (exact > 0 != quantized > 0) {
+            flips[bird]++;
+            flipped++;
+        }
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    /**
+     * @return Number of decisions where the bird would have flapped with one path but not with the other
+     */
+    public long getFlipped() {
+        return flipped;
+    }
+
+    public int getFlipped(int bird) {
+        return flips[bird];
+    }
+
+    /**
+     * @return Index of the bird with the most flipped decisions
+     */
+    public int getWorstBird() {
+        int worst = 0;
+        for (int i = 1; i < flips.length; i++)
+            if (flips[i] > flips[worst]) worst = i;
+        return worst;
+    }
+
+    public double getMeanError() {
+        return decisions == 0 ? 0 : errorSum / decisions;
+    }
+
+    public float getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public String toString() {
+        int worst = getWorstBird();
+        return String.format("%d of %d decisions flipped (%.4f %%), output error mean %.6f, max %.6f, worst bird %d with %d flips",
+                flipped, decisions, decisions == 0 ? 0 : 100.0 * flipped / decisions, getMeanError(), maxError, worst, flips[worst]);
+    }
+}
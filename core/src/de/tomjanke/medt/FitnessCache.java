@@ -0,0 +1,192 @@
+package de.tomjanke.medt;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the fitness of networks on a course, so a network that is flown again on the same course,
+ * e.g. a copied elite, does not have to be simulated again.
+ * <p>
+ * Entries are keyed by a hash of the weights and the seed of the course, and the weights are stored as well,
+ * so a hash collision can never return a wrong fitness. The least recently used entry is evicted once the memory cap
+ * is reached. All entries are allocated up front and reused, so a lookup or an insertion allocates nothing.
+ */
+class FitnessCache {
+
+    private static final int EMPTY = -1;
+
+    /**
+     * Estimated bytes of an entry besides its weights: key, fitness, list links and two table slots
+     */
+    private static final int ENTRY_OVERHEAD = 8 + 4 + 4 + 4 + 8;
+
+    private final int weightCount,
+            capacity;
+
+    private final long[] keys,
+            courses;
+    private final int[] fitness;
+    private final float[] weights;
+
+    /**
+     * Doubly linked list over the entries, most recently used first
+     */
+    private final int[] previous,
+            next;
+    private int head = EMPTY,
+            tail = EMPTY;
+
+    /**
+     * Open addressing table of entry indices, at most half full
+     */
+    private final int[] table;
+    private final int mask;
+
+    private int size,
+            hits,
+            misses;
+
+    /**
+     * @param topology Layout of the networks
+     * @param bytes    Memory cap of the entries
+     */
+    FitnessCache(Topology topology, long bytes) {
+        weightCount = topology.getWeightCount();
+        capacity = (int) Math.max(1, Math.min((Integer.MAX_VALUE - 8) / Math.max(weightCount, 2), bytes / (ENTRY_OVERHEAD + 4L * weightCount)));
+        keys = new long[capacity];
+        courses = new long[capacity];
+        fitness = new int[capacity];
+        weights = new float[capacity * weightCount];
+        previous = new int[capacity];
+        next = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        mask = table.length - 1;
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * @param course Seed of the course the network is flown on
+     * @param net    Weights of the network
+     * @return The cached fitness or <tt>-1</tt>
+     */
+    int get(long course, float[] net) {
+        long key = hash(course, net);
+        int entry = find(key, course, net);
+        if (entry == EMPTY) {
+            misses++;
+            return -1;
+        }
+        hits++;
+        unlink(entry);
+        linkFirst(entry);
+        return fitness[entry];
+    }
+
+    /**
+     * Remembers the fitness of a network, evicts the least recently used entry if the cache is full
+     *
+     * @param course  Seed of the course the network was flown on
+     * @param net     Weights of the network
+     * @param fitness Its fitness on that course
+     */
+    void put(long course, float[] net, int fitness) {
+        long key = hash(course, net);
+        int entry = find(key, course, net);
+        if (entry == EMPTY) {
+            if (size < capacity) entry = size++;
+            else {
+                entry = tail;
+                remove(entry);
+            }
+            keys[entry] = key;
+            courses[entry] = course;
+            System.arraycopy(net, 0, weights, entry * weightCount, weightCount);
+            insert(entry);
+        } else unlink(entry);
+        this.fitness[entry] = fitness;
+        linkFirst(entry);
+    }
+
+    private int find(long key, long course, float[] net) {
+        for (int i = (int) key & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (keys[entry] == key && courses[entry] == course && equals(entry, net)) return entry;
+        }
+        return EMPTY;
+    }
+
+    private boolean equals(int entry, float[] net) {
+        int offset = entry * weightCount;
+        for (int i = 0; i < weightCount; i++)
+            if (Float.floatToIntBits(weights[offset + i]) != Float.floatToIntBits(net[i])) return false;
+        return true;
+    }
+
+    private void insert(int entry) {
+        int i = (int) keys[entry] & mask;
+        while (table[i] != EMPTY)
+            i = (i + 1) & mask;
+        table[i] = entry;
+    }
+
+    /**
+     * Removes an entry from the table and the list, the following entries of its cluster are moved back,
+     * so linear probing still finds them
+     */
+    private void remove(int entry) {
+        unlink(entry);
+        int i = (int) keys[entry] & mask;
+        while (table[i] != entry)
+            i = (i + 1) & mask;
+        table[i] = EMPTY;
+        for (int j = (i + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+            int home = (int) keys[table[j]] & mask;
+            // Move the entry back unless its home lies cyclically between the hole and its position
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                table[i] = table[j];
+                table[j] = EMPTY;
+                i = j;
+            }
+        }
+    }
+
+    private void unlink(int entry) {
+        if (previous[entry] != EMPTY) next[previous[entry]] = next[entry];
+        else head = next[entry];
+        if (next[entry] != EMPTY) previous[next[entry]] = previous[entry];
+        else tail = previous[entry];
+    }
+
+    private void linkFirst(int entry) {
+        previous[entry] = EMPTY;
+        next[entry] = head;
+        if (head != EMPTY) previous[head] = entry;
+        head = entry;
+        if (tail == EMPTY) tail = entry;
+    }
+
+    private static long hash(long course, float[] net) {
+        long h = course;
+        for (float w : net)
+            h = h * 0x9E3779B97F4A7C15L + Float.floatToIntBits(w);
+        // SplitMix64 finalizer, so the low bits used by the table depend on all weights
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+}
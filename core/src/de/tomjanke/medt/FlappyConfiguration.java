@@ -0,0 +1,151 @@
+package de.tomjanke.medt;
+
+import java.util.Random;
+
+/**
+ * Settings of a {@link FlappySimulation}
+ */
+public class FlappyConfiguration {
+
+    /**
+     * Number of birds in every generation
+     */
+    public int birdCount = 20;
+
+    /**
+     * Number of threads the birds are simulated on. Results do not depend on it.
+     */
+    public int threads = 1;
+
+    /**
+     * Master seed of the pipe heights, the initial weights and all mutations.
+     * Two runs with the same seed and bird count are identical.
+     */
+    public long seed = new Random().nextLong();
+
+    /**
+     * Layout of the networks, the input layer must have 4 neurons
+     */
+    public Topology topology = Topology.DEFAULT;
+
+    /**
+     * Number format of the weights in the batched forward pass, the quantized ones need less memory bandwidth
+     */
+    public Precision precision = Precision.FLOAT;
+
+    /**
+     * Runs the float forward pass on the Java Vector API if the <tt>vector</tt> module and
+     * <tt>jdk.incubator.vector</tt> are available, see {@link ForwardKernel}. The results are the same.
+     * Needs the weights on the heap, so it cannot be combined with {@link #offHeap}.
+     */
+    public boolean vector = false;
+
+    /**
+     * Keeps the weights and the fitness of the networks in direct buffers outside of the Java heap instead of an
+     * object per network, so the heap and the garbage collection of million-bird runs do not grow with the population.
+     * The packed weights of the forward pass are kept outside of the heap as well.
+     */
+    public boolean offHeap = false;
+
+    /**
+     * Ends a generation after this many ticks, <tt>0</tt> for no limit
+     */
+    public int maxTicks = 0;
+
+    /**
+     * Ends a generation once this score is reached, <tt>0</tt> for no limit
+     */
+    public int maxScore = 0;
+
+    /**
+     * Ends a generation as soon as the bred network can no longer change:
+     * a single bird survives and every other bird is below the breeding threshold of its fitness.
+     * Only the reported score and fitness of the generation are cut short.
+     * Needs the legacy selection, a single course and no {@link #adaptiveMutation}.
+     */
+    public boolean stopWhenDecided = false;
+
+    /**
+     * How the parents of the next generation are picked, {@link Selection#LEGACY} is the original breeding.
+     * {@link #stopWhenDecided} and replays need the legacy breeding.
+     */
+    public Selection selection = Selection.LEGACY;
+
+    /**
+     * How two parents are combined, not used by the legacy breeding
+     */
+    public Crossover crossover = Crossover.UNIFORM;
+
+    /**
+     * Number of the fittest birds that are kept unchanged, at least the best one is always kept.
+     * The legacy breeding keeps its averaged network.
+     */
+    public int elitism = 1;
+
+    /**
+     * Maximum change of every weight of a child
+     */
+    public float mutation = .3f;
+
+    /**
+     * The legacy breeding averages the best network with every network above this share of its fitness
+     */
+    public double breedingThreshold = .8;
+
+    /**
+     * Downward acceleration of the birds in pixels per second and tick
+     */
+    public float gravity = 10f;
+
+    /**
+     * Upward speed of a bird after a flap in pixels per tick
+     */
+    public float flapImpulse = 4f;
+
+    /**
+     * Adapts the mutation to the progress: it shrinks while the best fitness improves and grows while it stagnates,
+     * between a quarter and four times {@link #mutation}
+     */
+    public boolean adaptiveMutation = false;
+
+    /**
+     * Flies every generation on the course of the first one instead of a new course per generation,
+     * so the fitness of a network that is flown again, e.g. a copied elite, can be taken from the cache
+     */
+    public boolean fixedCourse = false;
+
+    /**
+     * Number of courses every network flies per generation, each with its own pipe heights.
+     * More courses make the fitness less dependent on luck, the flights are simulated side by side on all threads.
+     */
+    public int courses = 1;
+
+    /**
+     * How the fitness of the courses is combined
+     */
+    public Aggregation aggregation = Aggregation.MEAN;
+
+    /**
+     * Memory cap of the fitness cache in bytes, <tt>0</tt> disables it.
+     * The cache only hits with {@link #fixedCourse}, and it cannot be combined with {@link #stopWhenDecided}.
+     */
+    public long fitnessCacheBytes = 0;
+
+    /**
+     * Share of the novelty of a bird's flight in the fitness the networks are bred by, <tt>0</tt> disables novelty search
+     * and <tt>1</tt> breeds by novelty alone. The novelty is the mean distance in pixels to the nearest flights of the
+     * generation and of an archive, so it is on a similar scale as the ticks of the fitness.
+     */
+    public float noveltyWeight = 0;
+
+    /**
+     * Number of nearest flights the novelty is measured to
+     */
+    public int noveltyNeighbors = 15;
+
+    /**
+     * Number of the most novel flights of every generation that are added to the archive
+     */
+    public int noveltyArchiveRate = 10;
+
+}
@@ -0,0 +1,1095 @@
+package de.tomjanke.medt;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Headless game engine: physics, collision, scoring and the breed / reset cycle.
+ * It needs no GL context, so it can be driven by the viewer or by a command line trainer.
+ * <p>
+ * The living birds are kept in the front slots of {@link #living}, and their packed weights in the same slots
+ * of the {@link PopulationEvaluator}, so the cost of a tick scales with the living birds, not the population.
+ * <p>
+ * Every network can fly several courses at once. Each flight is a run with its own bird, and runs are ordered by
+ * course: run <tt>course * birdCount + index</tt> is network <tt>index</tt> on that course. The pipes move the same
+ * on every course, only their heights differ, so a tick still moves the pipes once and simulates all runs together.
+ * Bird indices of the accessors are run indices, with a single course both are the same.
+ */
+public class FlappySimulation {
+
+    public static final float TICK = 1 / 60f;
+    public static final int HALF_PIPE_HEIGHT = 60;
+
+    /**
+     * Every bird sees its height, the height of the next gap, the distance to the next pipe and its velocity
+     */
+    public static final int INPUTS = 4;
+
+    /**
+     * Number of pipes that are on screen at once
+     */
+    private static final int PIPES_ON_SCREEN = 4;
+
+    /**
+     * Number of upcoming pipes kept per course: the ones on screen and the one after them
+     */
+    private static final int PIPE_WINDOW = PIPES_ON_SCREEN + 1;
+
+    /**
+     * Minimum number of birds a parallel chunk is worth it for
+     */
+    private static final int MIN_CHUNK = 1024;
+
+    /**
+     * Independent random streams that are derived from the master seed
+     */
+    static final int EVOLUTION = 0,
+            COURSE = 1;
+
+    private long seed;
+
+    /**
+     * Source of the initial weights and the mutations, reseeded for every generation
+     */
+    private final Random random;
+
+    /**
+     * Source of the pipe heights of every course, reseeded for every generation
+     */
+    private final Random[] courseRandom;
+
+    /**
+     * Upcoming pipe heights of all courses in one shared ring buffer: pipe <tt>p</tt> of course <tt>k</tt> is at
+     * <tt>k * PIPE_WINDOW + p % PIPE_WINDOW</tt>, and {@link #pipeIndex} is the first pipe on screen.
+     * Passed pipes are overwritten, so a generation that never ends needs no more memory.
+     */
+    private final float[] pipes;
+    private int pipesGenerated,
+            pipeIndex;
+
+    private final int birdCount,
+            courses;
+    private final Aggregation aggregation;
+
+    /**
+     * Course of every run, <tt>null</tt> with a single course
+     */
+    private final int[] runCourse;
+
+    private final float[] velocity,
+            birds;
+
+    /**
+     * Fitness of every run in this generation, combined into the fitness of the networks when it ends
+     */
+    private final int[] fitness;
+
+    /**
+     * Weights and fitness of the networks, on the heap or off-heap
+     */
+    private Population networks;
+
+    /**
+     * Networks an off-heap population is loaded into while it is bred, see {@link Population#get(int, NeuralNet)},
+     * and the one {@link #getNetwork(int)} returns
+     */
+    private final NeuralNet cursor,
+            parent,
+            other,
+            view;
+
+    private final PopulationEvaluator evaluator;
+
+    private final float[] showcaseInput;
+
+    private final boolean[] dead;
+
+    /**
+     * Bird of every evaluator slot, the first {@link #alive} slots hold the living birds
+     */
+    private final int[] living;
+
+    /**
+     * Termination policies, see {@link FlappyConfiguration}
+     */
+    private final int maxTicks,
+            maxScore;
+    private final boolean stopWhenDecided;
+
+    /**
+     * Physics and breeding threshold, see {@link FlappyConfiguration}
+     */
+    private final float gravity,
+            flapImpulse;
+    private final double breedingThreshold;
+
+    /**
+     * Breeding, see {@link FlappyConfiguration}
+     */
+    private final Selection selection;
+    private final Crossover crossover;
+    private final int elitism;
+    private final float mutation;
+    private final boolean adaptiveMutation;
+    private float mutationRate;
+    private int previousBest;
+
+    /**
+     * The next generation is bred into these networks, then both populations swap.
+     * Only the selections other than {@link Selection#LEGACY} need them.
+     */
+    private Population offspring;
+    private final int[] order;
+    private final long[] ranking,
+            cumulative;
+
+    /**
+     * Fitness of networks on a course, <tt>null</tt> if disabled. Birds whose fitness is cached are not simulated,
+     * but the generation still runs until the last of them would have died, so the score stays the same.
+     */
+    private final FitnessCache cache;
+    private final boolean[] cached;
+    private final boolean fixedCourse;
+    private final long[] courseSeeds;
+    private boolean lookupPending;
+    private int cachedFitness;
+
+    /**
+     * Mixes the novelty of the behavior into the fitness, <tt>null</tt> if disabled
+     */
+    private final Novelty novelty;
+
+    private final ForkJoinPool pool;
+    private final RecursiveAction allChunks;
+    private final Chunk[] chunks;
+    private int activeChunks;
+
+    /**
+     * Collects the time of the phases while it is set, see {@link #setMetrics(Metrics)}
+     */
+    private Metrics metrics;
+
+    private float pipeX,
+            pipePosition;
+
+    /**
+     * Height of the next gap on every course
+     */
+    private final float[] gaps;
+
+    /**
+     * Whether the first pipe overlaps the birds horizontally in this tick, and the vertical bounds of both of its halves
+     * on every course
+     */
+    private boolean pipeInRange;
+    private final float[] upperBottom,
+            upperTop,
+            lowerBottom,
+            lowerTop;
+
+    private boolean scoreLock;
+    private int score = 0,
+            lastScore = 0,
+            lastFitness = 0,
+            generation = 0,
+            bestScore = 0,
+            bestScoreGen = 0,
+            alive = 0,
+            ticks = 0,
+            deadFitness = 0;
+
+    public FlappySimulation(FlappyConfiguration config) {
+        this(config, config.seed);
+    }
+
+    FlappySimulation(FlappyConfiguration config, long seed) {
+        birdCount = config.birdCount;
+        courses = config.courses;
+        if (courses < 1) throw new IllegalArgumentException("At least one course is needed");
+        int runs = birdCount * courses;
+        if (config.topology.getInputSize() != INPUTS)
+            throw new IllegalArgumentException("The networks need " + INPUTS + " inputs, not " + config.topology.getInputSize());
+        // The kernel works on arrays, the off-heap weights of the evaluator are not one
+        if (config.vector && config.offHeap)
+            throw new IllegalArgumentException("The Vector API cannot be combined with off-heap weights");
+        this.seed = seed;
+        maxTicks = config.maxTicks;
+        maxScore = config.maxScore;
+        stopWhenDecided = config.stopWhenDecided;
+        gravity = TICK * config.gravity;
+        flapImpulse = config.flapImpulse;
+        breedingThreshold = config.breedingThreshold;
+        if (stopWhenDecided && config.selection != Selection.LEGACY)
+            throw new IllegalArgumentException("Stopping when the generation is decided needs the legacy selection");
+        if (stopWhenDecided && courses > 1)
+            throw new IllegalArgumentException("Stopping when the generation is decided needs a single course");
+        // A generation that is cut short reports a lower fitness, which would change an adaptive mutation
+        if (stopWhenDecided && config.adaptiveMutation)
+            throw new IllegalArgumentException("Stopping when the generation is decided needs a fixed mutation");
+        aggregation = config.aggregation;
+        selection = config.selection;
+        crossover = config.crossover;
+        elitism = Math.max(1, Math.min(config.elitism, birdCount));
+        mutation = config.mutation;
+        adaptiveMutation = config.adaptiveMutation;
+        mutationRate = mutation;
+        previousBest = -1;
+        fixedCourse = config.fixedCourse;
+        if (config.fitnessCacheBytes > 0) {
+            if (stopWhenDecided)
+                throw new IllegalArgumentException("The fitness cache cannot be combined with stopping when the generation is decided");
+            cache = new FitnessCache(config.topology, config.fitnessCacheBytes);
+            cached = new boolean[runs];
+        } else {
+            cache = null;
+            cached = null;
+        }
+        if (config.noveltyWeight > 0) {
+            if (stopWhenDecided || cache != null)
+                throw new IllegalArgumentException("Novelty search cannot be combined with stopping when the generation is decided or the fitness cache");
+            novelty = new Novelty(birdCount, config.noveltyNeighbors, config.noveltyArchiveRate, config.noveltyWeight);
+        } else novelty = null;
+        random = new Random(deriveSeed(seed, 0, EVOLUTION));
+        courseRandom = new Random[courses];
+        for (int k = 0; k < courses; k++)
+            courseRandom[k] = new Random();
+        courseSeeds = new long[courses];
+        pipes = new float[courses * PIPE_WINDOW];
+        gaps = new float[courses];
+        upperBottom = new float[courses];
+        upperTop = new float[courses];
+        lowerBottom = new float[courses];
+        lowerTop = new float[courses];
+
+        birds = new float[runs];
+        velocity = new float[runs];
+        fitness = new int[runs];
+        networks = Population.create(config.topology, birdCount, config.offHeap);
+        cursor = new NeuralNet(config.topology);
+        parent = new NeuralNet(config.topology);
+        other = new NeuralNet(config.topology);
+        view = new NeuralNet(config.topology);
+        dead = new boolean[runs];
+        living = new int[runs];
+        if (courses > 1) {
+            runCourse = new int[runs];
+            for (int run = 0; run < runs; run++)
+                runCourse[run] = run / birdCount;
+        } else runCourse = null;
+        networks.randomize(cursor, random);
+        if (selection != Selection.LEGACY) {
+            offspring = Population.create(config.topology, birdCount, config.offHeap);
+            order = new int[birdCount];
+            ranking = new long[birdCount];
+            cumulative = new long[birdCount];
+        } else {
+            order = null;
+            ranking = null;
+            cumulative = null;
+        }
+
+        showcaseInput = new float[INPUTS];
+        evaluator = new PopulationEvaluator(runs, config.topology, config.precision, config.vector ? ForwardKernel.vector() : null, config.offHeap);
+
+        // Split the birds into a few chunks per thread, so idle threads can steal work
+        int chunkCount = Math.max(1, Math.min(config.threads * 4, runs / MIN_CHUNK));
+        chunks = new Chunk[chunkCount];
+        for (int i = 0; i < chunkCount; i++)
+            chunks[i] = new Chunk();
+        if (chunkCount > 1 && config.threads > 1) {
+            pool = new ForkJoinPool(config.threads);
+            allChunks = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int i = 1; i < activeChunks; i++) {
+                        chunks[i].reinitialize();
+                        chunks[i].fork();
+                    }
+                    chunks[0].compute();
+                    for (int i = 1; i < activeChunks; i++)
+                        chunks[i].join();
+                }
+            };
+        } else {
+            pool = null;
+            allChunks = null;
+        }
+
+        reset();
+    }
+
+    /**
+     * Advances the simulation by one {@link #TICK}
+     *
+     * @return <tt>true</tt> if all birds died or a termination policy ended the generation, and the next one was bred
+     */
+    public boolean step() {
+        long start = metrics != null ? System.nanoTime() : 0;
+        if (lookupPending) lookup();
+        ticks++;
+        int gap = pipeIndex;
+        if (pipeX < 50) {
+            gap++;
+            if (!scoreLock) {
+                score++;
+                if (bestScore < score) {
+                    bestScore = score;
+                    bestScoreGen = generation;
+                }
+                scoreLock = true;
+            }
+        }
+
+        pipeX -= TICK * 80;
+        pipePosition = pipeX;
+        if (pipeX < 100) pipePosition += 200;
+        pipePosition -= 100;
+
+        // The bird is at 100..134 horizontally and 24 high, the pipe 52 wide and 320 high.
+        // The bounds are computed exactly like Rectangle.overlaps() would, so no bird dies a tick earlier or later.
+        pipeInRange = 100 < pipeX + 52 && 100 + 34 > pipeX;
+        for (int k = 0; k < courses; k++) {
+            float first = pipes[k * PIPE_WINDOW + pipeIndex % PIPE_WINDOW];
+            gaps[k] = pipes[k * PIPE_WINDOW + gap % PIPE_WINDOW];
+            upperBottom[k] = first + HALF_PIPE_HEIGHT;
+            upperTop[k] = upperBottom[k] + 320;
+            lowerBottom[k] = first - HALF_PIPE_HEIGHT - 320;
+            lowerTop[k] = lowerBottom[k] + 320;
+        }
+
+        // Only the living birds are simulated, a chunk is only worth it for enough of them
+        activeChunks = Math.max(1, Math.min(chunks.length, alive / MIN_CHUNK));
+        for (int i = 0; i < activeChunks; i++)
+            chunks[i].set(alive * i / activeChunks, alive * (i + 1) / activeChunks);
+
+        // Every bird only depends on the shared pipes, so the chunks can run in any order
+        if (pool != null && activeChunks > 1) {
+            allChunks.reinitialize();
+            pool.invoke(allChunks);
+        } else for (int i = 0; i < activeChunks; i++) chunks[i].compute();
+
+        int deaths = 0;
+        for (int i = 0; i < activeChunks; i++)
+            deaths += chunks[i].deaths;
+        int simulated = alive;
+        if (deaths > 0) compact();
+
+        if (metrics != null) {
+            long forward = 0,
+                    collision = 0;
+            for (int i = 0; i < activeChunks; i++) {
+                forward += chunks[i].forwardNanos;
+                collision += chunks[i].collisionNanos;
+            }
+            metrics.step(simulated, alive, System.nanoTime() - start, forward, collision);
+        }
+
+        if (novelty != null && ticks % Novelty.INTERVAL == 0 && ticks <= Novelty.SAMPLES * Novelty.INTERVAL)
+            novelty.sample(ticks / Novelty.INTERVAL - 1, birds, dead, gaps[0]);
+
+        if (alive == 0 && ticks > cachedFitness || isFinished()) {
+            lastScore = score;
+            if (cache != null) remember();
+            aggregate();
+            if (metrics != null) metrics.fitness(networks, alive);
+            if (novelty != null) {
+                novelty.finish(ticks, birds, dead, gaps[0]);
+                novelty.evaluate(networks);
+            }
+            if (metrics != null) {
+                long breedStart = System.nanoTime();
+                breed();
+                metrics.finish(generation, System.nanoTime() - breedStart);
+            } else breed();
+            reset();
+            return true;
+        }
+
+        if (pipeX <= -54) {
+            pipeX += 200;
+            pipeIndex++;
+            generatePipes();
+            scoreLock = false;
+        }
+        return false;
+    }
+
+    /**
+     * Simulates the living birds in the slots of a chunk for the current tick
+     */
+    private void simulate(Chunk chunk) {
+        int from = chunk.from,
+                to = chunk.to;
+        boolean timed = metrics != null;
+        int[] runCourse = this.runCourse;
+        for (int slot = from; slot < to; slot++) {
+            int i = living[slot];
+            velocity[i] -= gravity;
+            evaluator.setInput(slot, 0, birds[i]);
+            evaluator.setInput(slot, 1, gaps[runCourse != null ? runCourse[i] : 0]);
+            evaluator.setInput(slot, 2, pipePosition);
+            evaluator.setInput(slot, 3, velocity[i]);
+        }
+
+        long forwardStart = timed ? System.nanoTime() : 0;
+        evaluator.evaluate(from, to);
+        long forwardEnd = timed ? System.nanoTime() : 0;
+
+        for (int slot = from; slot < to; slot++) {
+            int i = living[slot];
+            if (evaluator.getOutput(slot) > 0)
+                if (birds[i] <= 420 && velocity[i] < 1.2f)
+                    velocity[i] = flapImpulse;
+            birds[i] += velocity[i];
+        }
+
+        long collisionStart = timed ? System.nanoTime() : 0;
+        int deaths = 0;
+        if (pipeInRange) {
+            // One pass tests every bird against the ground and both halves of the pipe of its course
+            float[] upperBottom = this.upperBottom,
+                    upperTop = this.upperTop,
+                    lowerBottom = this.lowerBottom,
+                    lowerTop = this.lowerTop;
+            for (int slot = from; slot < to; slot++) {
+                int i = living[slot],
+                        k = runCourse != null ? runCourse[i] : 0;
+                float bottom = birds[i] - 12,
+                        top = bottom + 24;
+                boolean hit = bottom < upperTop[k] & top > upperBottom[k]
+                        | bottom < lowerTop[k] & top > lowerBottom[k]
+                        | birds[i] < 100;
+                dead[i] = hit;
+                if (hit) deaths++;
+            }
+        } else {
+            // The pipe is out of reach, only the ground can kill a bird
+            for (int slot = from; slot < to; slot++) {
+                int i = living[slot];
+                boolean hit = birds[i] < 100;
+                dead[i] = hit;
+                if (hit) deaths++;
+            }
+        }
+
+        for (int slot = from; slot < to; slot++) {
+            int i = living[slot];
+            if (!dead[i]) fitness[i]++;
+        }
+        chunk.deaths = deaths;
+        if (timed) {
+            chunk.forwardNanos = forwardEnd - forwardStart;
+            chunk.collisionNanos = System.nanoTime() - collisionStart;
+        }
+    }
+
+    /**
+     * Simulates the rest of the current generation. Only the survivors are left to simulate,
+     * so this is bounded by the termination policies, without them the elite may fly forever.
+     *
+     * @return Number of simulated ticks
+     */
+    public int fastForward() {
+        int ticks = 1;
+        while (!step())
+            ticks++;
+        return ticks;
+    }
+
+    /**
+     * @return Whether a termination policy ends the current generation although birds are still alive
+     */
+    private boolean isFinished() {
+        if (maxTicks > 0 && ticks >= maxTicks) return true;
+        if (maxScore > 0 && score >= maxScore) return true;
+        // The fitness of the dead birds is final and the survivor only gets better, so nobody can reach the threshold anymore
+        return stopWhenDecided && alive == 1 && (int) (fitness[living[0]] * breedingThreshold) > deadFitness;
+    }
+
+    /**
+     * Takes the fitness of every network from the cache that has been flown on this course before.
+     * Runs before the first tick of a generation, so networks that were changed after the reset are looked up as well.
+     */
+    private void lookup() {
+        lookupPending = false;
+        alive = 0;
+        int skipped = birds.length;
+        for (int run = 0; run < birds.length; run++) {
+            int known = cache.get(courseSeeds[run / birdCount], networks.get(run % birdCount, cursor).getWeights());
+            cached[run] = known >= 0;
+            if (cached[run]) {
+                // A cached bird counts as dead from the start, it died after its fitness worth of ticks
+                fitness[run] = known;
+                dead[run] = true;
+                cachedFitness = Math.max(cachedFitness, known);
+                living[--skipped] = run;
+            } else living[alive++] = run;
+        }
+        for (int slot = 0; slot < alive; slot++)
+            evaluator.pack(slot, networks.get(living[slot] % birdCount, cursor));
+    }
+
+    /**
+     * Caches the fitness of every simulated network of the generation that just ended
+     */
+    private void remember() {
+        for (int run = 0; run < birds.length; run++)
+            if (!cached[run]) cache.put(courseSeeds[run / birdCount], networks.get(run % birdCount, cursor).getWeights(), fitness[run]);
+    }
+
+    /**
+     * Combines the fitness of the runs of every network
+     */
+    private void aggregate() {
+        for (int bird = 0; bird < birdCount; bird++) {
+            long sum = fitness[bird];
+            int min = fitness[bird];
+            for (int k = 1; k < courses; k++) {
+                int value = fitness[k * birdCount + bird];
+                sum += value;
+                min = Math.min(min, value);
+            }
+            networks.setFitness(bird, aggregation == Aggregation.MIN ? min : (int) (sum / courses));
+        }
+    }
+
+    /**
+     * Generates the pipes of all courses until the window from {@link #pipeIndex} on is full,
+     * every course draws its pipes in order from its own random
+     */
+    private void generatePipes() {
+        for (; pipesGenerated < pipeIndex + PIPE_WINDOW; pipesGenerated++)
+            for (int k = 0; k < courses; k++)
+                pipes[k * PIPE_WINDOW + pipesGenerated % PIPE_WINDOW] = 200 + courseRandom[k].nextFloat() * 200;
+    }
+
+    /**
+     * Moves the birds that died in this tick behind the living ones, in the slot list and in the evaluator
+     */
+    private void compact() {
+        int slot = 0;
+        while (slot < alive) {
+            if (dead[living[slot]]) {
+                alive--;
+                int bird = living[slot];
+                deadFitness = Math.max(deadFitness, fitness[bird]);
+                living[slot] = living[alive];
+                living[alive] = bird;
+                evaluator.swap(slot, alive);
+            } else slot++;
+        }
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void dispose() {
+        if (pool != null) pool.shutdown();
+    }
+
+    /**
+     * Replaces the whole population with fresh random networks and starts over at the first generation
+     *
+     * @param seed New master seed
+     */
+    public void restart(long seed) {
+        this.seed = seed;
+        random.setSeed(deriveSeed(seed, 0, EVOLUTION));
+        networks.randomize(cursor, random);
+        mutationRate = mutation;
+        previousBest = -1;
+        bestScoreGen = 0;
+        bestScore = 0;
+        generation = 0;
+        reset();
+    }
+
+    /**
+     * Seeds the population with mutations of the given network, exactly like {@link #breed()} would have
+     *
+     * @param network    Network to seed the population with
+     * @param generation Generation the population starts in
+     */
+    void seed(NeuralNet network, int generation) {
+        random.setSeed(deriveSeed(seed, generation, EVOLUTION));
+        networks.set(0, network);
+        for (int i = 1; i < birdCount; i++) {
+            NeuralNet child = networks.get(i, cursor);
+            child.inherit(network, mutation, random);
+            networks.set(i, child);
+        }
+        networks.resetFitness();
+        mutationRate = mutation;
+        previousBest = -1;
+        bestScoreGen = 0;
+        bestScore = 0;
+        this.generation = generation - 1;
+        reset();
+    }
+
+    /**
+     * Starts the given generation over with the current weights of all networks, e.g. from a {@link Checkpoint}
+     *
+     * @param seed       Master seed of the restored run
+     * @param generation Generation to start
+     */
+    void restore(long seed, int generation) {
+        this.seed = seed;
+        networks.resetFitness();
+        mutationRate = mutation;
+        previousBest = -1;
+        bestScoreGen = 0;
+        bestScore = 0;
+        this.generation = generation - 1;
+        reset();
+    }
+
+    /**
+     * Continues a run at the given generation, e.g. from a {@link Replay}
+     *
+     * @param elite        Elite that was bred at the end of the previous generation
+     * @param generation   Generation to continue with
+     * @param bestScore    Best score of the run so far
+     * @param bestScoreGen Generation the best score was reached in
+     */
+    void resume(NeuralNet elite, int generation, int bestScore, int bestScoreGen) {
+        seed(elite, generation);
+        this.bestScore = bestScore;
+        this.bestScoreGen = bestScoreGen;
+    }
+
+    /**
+     * Replaces one of the mutated children of the current generation with a copy of a network
+     * from elsewhere, e.g. another island. The elite at index 0 is never replaced.
+     * Must be called between generations.
+     *
+     * @param migrant Network to copy
+     * @param slot    Which child to replace, counted from the end of the population
+     */
+    void immigrate(NeuralNet migrant, int slot) {
+        int index = birdCount - 1 - slot;
+        if (index <= 0) return;
+        networks.set(index, migrant);
+        // Right after a reset every run is in its own slot
+        for (int k = 0; k < courses; k++)
+            evaluator.pack(k * birdCount + index, migrant);
+    }
+
+    private void reset() {
+        if (metrics != null) metrics.discard();
+        pipeX = 200;
+        score = 0;
+        ticks = 0;
+        deadFitness = 0;
+        scoreLock = false;
+        generation++;
+        // The first course keeps the seed of a single course run, the others are derived from it
+        long courseSeed = deriveSeed(seed, fixedCourse ? 1 : generation, COURSE);
+        for (int k = 0; k < courses; k++) {
+            courseSeeds[k] = k == 0 ? courseSeed : deriveSeed(courseSeed, k, COURSE);
+            courseRandom[k].setSeed(courseSeeds[k]);
+        }
+        pipeIndex = 0;
+        pipesGenerated = 0;
+        generatePipes();
+        cachedFitness = 0;
+        lookupPending = cache != null;
+        for (int i = 0; i < birds.length; i++) {
+            birds[i] = 256;
+            velocity[i] = 2f;
+            dead[i] = false;
+            living[i] = i;
+            fitness[i] = 0;
+            evaluator.pack(i, networks.get(i % birdCount, cursor));
+        }
+        alive = birds.length;
+    }
+
+    /**
+     * Breeds the next generation with the configured {@link Selection} and resets the fitness.
+     * The networks are reused, so no memory is allocated.
+     */
+    private void breed() {
+        if (selection == Selection.LEGACY) breedLegacy();
+        else breedSelected();
+
+        networks.resetFitness();
+    }
+
+    /**
+     * Averages the best network with every network above 80% of its fitness and
+     * refills the population with mutations of it
+     */
+    private void breedLegacy() {
+        int best = 0;
+        for (int i = 1; i < birdCount; i++)
+            if (networks.getFitness(best) < networks.getFitness(i)) best = i;
+
+        NeuralNet bestNetwork = networks.get(best, parent);
+        int threshold = (int) (bestNetwork.getFitness() * breedingThreshold);
+
+        for (int i = 0; i < birdCount; i++)
+            if (i != best && networks.getFitness(i) >= threshold) bestNetwork.breed(networks.get(i, other));
+
+        lastFitness = bestNetwork.getFitness();
+        adapt(lastFitness);
+
+        // The best network moves to the front, every other one becomes a mutation of it
+        networks.set(0, bestNetwork);
+        bestNetwork = networks.get(0, parent);
+        random.setSeed(deriveSeed(seed, generation + 1, EVOLUTION));
+        for (int i = 1; i < birdCount; i++) {
+            NeuralNet child = networks.get(i, cursor);
+            child.inherit(bestNetwork, mutationRate, random);
+            networks.set(i, child);
+        }
+    }
+
+    /**
+     * Keeps the fittest birds and fills the rest of the population with mutated crossovers of selected parents.
+     * The elite ends up in front, so the best network is at index 0 like after {@link #breedLegacy()}.
+     */
+    private void breedSelected() {
+        // Ranked by fitness, ties by index, so the order does not depend on the sort
+        for (int i = 0; i < birdCount; i++)
+            ranking[i] = (long) (Integer.MAX_VALUE - networks.getFitness(i)) << 32 | i;
+        sort(ranking);
+        long sum = 0;
+        for (int rank = 0; rank < birdCount; rank++) {
+            order[rank] = (int) ranking[rank];
+            sum += networks.getFitness(order[rank]);
+            cumulative[rank] = sum;
+        }
+
+        lastFitness = networks.getFitness(order[0]);
+        adapt(lastFitness);
+
+        random.setSeed(deriveSeed(seed, generation + 1, EVOLUTION));
+        for (int i = 0; i < elitism; i++)
+            offspring.set(i, networks.get(order[i], parent));
+        for (int i = elitism; i < birdCount; i++) {
+            // Two distinct parents, unless there is only a single bird
+            int a = selection.select(cumulative, random, -1),
+                    b = selection.select(cumulative, random, birdCount > 1 ? a : -1);
+            NeuralNet child = offspring.get(i, cursor);
+            child.cross(networks.get(order[a], parent), networks.get(order[b], other), crossover, mutationRate, random);
+            offspring.set(i, child);
+        }
+
+        Population parents = networks;
+        networks = offspring;
+        offspring = parents;
+    }
+
+    /**
+     * Heap sort, unlike {@link java.util.Arrays#sort(long[])} it never allocates a buffer
+     */
+    private static void sort(long[] a) {
+        for (int i = a.length / 2 - 1; i >= 0; i--)
+            siftDown(a, i, a.length);
+        for (int end = a.length - 1; end > 0; end--) {
+            long top = a[0];
+            a[0] = a[end];
+            a[end] = top;
+            siftDown(a, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] a, int i, int size) {
+        long value = a[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && a[child + 1] > a[child]) child++;
+            if (a[child] <= value) break;
+            a[i] = a[child];
+            i = child;
+        }
+        a[i] = value;
+    }
+
+    /**
+     * Shrinks the mutation while the best fitness improves and grows it while it stagnates
+     */
+    private void adapt(int bestFitness) {
+        if (!adaptiveMutation) return;
+        if (previousBest >= 0)
+            mutationRate = bestFitness > previousBest ? Math.max(mutation / 4, mutationRate * .8f) : Math.min(mutation * 4, mutationRate * 1.25f);
+        previousBest = bestFitness;
+    }
+
+    /**
+     * @return Index of the first living bird or -1 if all are dead
+     */
+    public int getFirstAlive() {
+        for (int i = 0; i < dead.length; i++)
+            if (!dead[i]) return i;
+        return -1;
+    }
+
+    /**
+     * @return The network at an index. Off-heap it is a copy that is only valid until the next call,
+     * write changes back with {@link #setNetwork(int, NeuralNet)}.
+     */
+    NeuralNet getNetwork(int index) {
+        return networks.get(index, view);
+    }
+
+    /**
+     * Replaces the weights of the network at an index
+     */
+    void setNetwork(int index, NeuralNet network) {
+        networks.set(index, network);
+    }
+
+    /**
+     * Feeds the last inputs of a bird through its own network again, so its layers can be visualized
+     *
+     * @param index Index of the bird
+     * @return The network of the bird
+     */
+    NeuralNet showcase(int index) {
+        int slot = 0;
+        while (living[slot] != index) slot++;
+        evaluator.getInput(slot, showcaseInput);
+        NeuralNet network = networks.get(index % birdCount, view);
+        network.activate(showcaseInput);
+        return network;
+    }
+
+    /**
+     * Compares the last decision of every living bird with the float path of its own network.
+     * Must be called right after {@link #step()} returned <tt>false</tt>, a new generation has not decided anything yet.
+     *
+     * @param drift Collects the comparison
+     */
+    public void measureDrift(Drift drift) {
+        for (int slot = 0; slot < alive; slot++) {
+            int i = living[slot];
+            evaluator.getInput(slot, showcaseInput);
+            drift.add(i, networks.get(i % birdCount, cursor).activate(showcaseInput), evaluator.getOutput(slot));
+        }
+    }
+
+    /**
+     * Attaches a collector for the time of the phases, the fitness and the survivors of every generation.
+     * Without one the simulation does not look at the clock. Must be called on the simulation thread.
+     *
+     * @param metrics Collector for the birds of this simulation or <tt>null</tt>
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        if (metrics != null) metrics.discard();
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isFixedCourse() {
+        return fixedCourse;
+    }
+
+    /**
+     * @return Number of networks whose fitness was taken from the cache so far
+     */
+    public int getCacheHits() {
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    public int getCacheMisses() {
+        return cache != null ? cache.getMisses() : 0;
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    public boolean isAdaptiveMutation() {
+        return adaptiveMutation;
+    }
+
+    public float getMutation() {
+        return mutation;
+    }
+
+    /**
+     * @return The mutation the last generation was bred with
+     */
+    public float getMutationRate() {
+        return mutationRate;
+    }
+
+    public Topology getTopology() {
+        return networks.getTopology();
+    }
+
+    /**
+     * @return Whether the forward pass runs on the Java Vector API
+     */
+    public boolean isVector() {
+        return evaluator.isKernel();
+    }
+
+    public Precision getPrecision() {
+        return evaluator.getPrecision();
+    }
+
+    /**
+     * @return Number of networks
+     */
+    public int getBirdCount() {
+        return birdCount;
+    }
+
+    /**
+     * @return Number of runs, the networks times the courses
+     */
+    public int getRunCount() {
+        return birds.length;
+    }
+
+    public int getCourses() {
+        return courses;
+    }
+
+    /**
+     * @return Whether the physics and the breeding threshold are the ones of the original game
+     */
+    public boolean isOriginalRules() {
+        return gravity == TICK * 10f && flapImpulse == 4f && breedingThreshold == .8;
+    }
+
+    public boolean isNovelty() {
+        return novelty != null;
+    }
+
+    /**
+     * @return Number of behaviors in the novelty archive, <tt>0</tt> without novelty search
+     */
+    public int getNoveltyArchiveSize() {
+        return novelty != null ? novelty.getArchiveSize() : 0;
+    }
+
+    public float getBird(int index) {
+        return birds[index];
+    }
+
+    public boolean isDead(int index) {
+        return dead[index];
+    }
+
+    /**
+     * @param index Index between <tt>0</tt> and {@link #getAlive()} (exclusive)
+     * @return Index of a living bird, in no particular order
+     */
+    public int getLivingBird(int index) {
+        return living[index];
+    }
+
+    public float getPipeX() {
+        return pipeX;
+    }
+
+    /**
+     * @return Height of a pipe on screen on the first course
+     */
+    public float getHeight(int index) {
+        return pipes[(pipeIndex + index) % PIPE_WINDOW];
+    }
+
+    public int getHeightCount() {
+        return PIPES_ON_SCREEN;
+    }
+
+    public int getAlive() {
+        return alive;
+    }
+
+    /**
+     * @return Ticks of the current generation
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    public int getMaxTicks() {
+        return maxTicks;
+    }
+
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    public boolean isStopWhenDecided() {
+        return stopWhenDecided;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return Score of the previous generation
+     */
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * @return Fitness of the best bird of the previous generation
+     */
+    public int getLastFitness() {
+        return lastFitness;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    public int getBestScoreGen() {
+        return bestScoreGen;
+    }
+
+    /**
+     * Derives the seed of one random stream of one generation from the master seed,
+     * so every generation can be reproduced on its own
+     */
+    static long deriveSeed(long seed, long index, int stream) {
+        // SplitMix64 finalizer
+        long z = seed + 0x9E3779B97F4A7C15L * (index * 2 + stream + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * A range of birds that is simulated as one unit of work
+     */
+    private class Chunk extends RecursiveAction {
+
+        private int from, to;
+        private int deaths;
+        private long forwardNanos,
+                collisionNanos;
+
+        void set(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            simulate(this);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package de.tomjanke.medt;
+
+/**
+ * Inner loop of the batched float forward pass of the {@link PopulationEvaluator}, one neuron of many birds at once.
+ * <p>
+ * The default is the plain loop of the evaluator, which the JIT may or may not vectorize. {@link #vector()} loads
+ * an implementation on the Java Vector API from the optional <tt>vector</tt> module, which needs Java 16 or newer and
+ * <tt>--add-modules jdk.incubator.vector</tt>. It is not part of the Gradle build but compiled by hand, see the readme,
+ * and loaded by reflection, so the core still runs on Java 8.
+ */
+public interface ForwardKernel {
+
+    /**
+     * Computes a neuron of the birds <tt>from</tt> (inclusive) to <tt>to</tt> (exclusive) before its activation:
+     * the sum of every input times its weight, added up in the order of the inputs like
+     * {@link NeuralNet#activate(float[])}, so the results are identical.
+     *
+     * @param neurons  All neurons, <tt>[neuron][bird]</tt>
+     * @param n        Start of the computed neuron in <tt>neurons</tt>
+     * @param previous Start of the first input neuron in <tt>neurons</tt>, the next inputs follow every <tt>count</tt>
+     * @param weights  All weights, <tt>[weight][bird]</tt>
+     * @param weight   Start of the weight of the first input in <tt>weights</tt>, the next weights follow every <tt>count</tt>
+     * @param inputs   Number of inputs
+     * @param count    Distance between two neurons or two weights, the number of birds
+     */
+    void neuron(float[] neurons, int n, int previous, float[] weights, int weight, int inputs, int count, int from, int to);
+
+    /**
+     * @return The kernel on the Vector API, or <tt>null</tt> if the <tt>vector</tt> module or
+     * <tt>jdk.incubator.vector</tt> is not available
+     */
+    static ForwardKernel vector() {
+        try {
+            return (ForwardKernel) Class.forName("de.tomjanke.medt.vector.VectorKernel").getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package de.tomjanke.medt;
+
+/**
+ * A population of {@link NeuralNet} objects, each with its own arrays
+ */
+class HeapPopulation extends Population {
+
+    private final NeuralNet[] networks;
+
+    HeapPopulation(Topology topology, int size) {
+        super(topology, size);
+        networks = new NeuralNet[size];
+        for (int i = 0; i < size; i++)
+            networks[i] = new NeuralNet(topology);
+    }
+
+    @Override
+    NeuralNet get(int network, NeuralNet cursor) {
+        return networks[network];
+    }
+
+    @Override
+    void set(int network, NeuralNet weights) {
+        if (networks[network] != weights) networks[network].copy(weights);
+    }
+
+    @Override
+    int getFitness(int network) {
+        return networks[network].getFitness();
+    }
+
+    @Override
+    void setFitness(int network, int fitness) {
+        networks[network].setFitness(fitness);
+    }
+}
@@ -0,0 +1,98 @@
+package de.tomjanke.medt;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Evolves several independent populations (islands) at once, each on its own thread.
+ * Every few generations an island sends a copy of its elite to the next island in the ring,
+ * which keeps the islands from converging on the same local optimum.
+ * <p>
+ * Every island is seeded from the master seed, but the arrival of migrants depends on thread timing.
+ */
+public class IslandModel {
+
+    /**
+     * Is informed about every finished generation, from the thread of the island
+     */
+    public interface Listener {
+        void generationEnded(int island, int generation, int score, int bestScore);
+    }
+
+    private final FlappySimulation[] islands;
+    private final ConcurrentLinkedQueue<NeuralNet>[] inboxes;
+    private final int migrationInterval;
+
+    /**
+     * @param config            Settings of every island
+     * @param islandCount       Number of islands
+     * @param migrationInterval Number of generations between two migrations
+     */
+    @SuppressWarnings("unchecked")
+    public IslandModel(FlappyConfiguration config, int islandCount, int migrationInterval) {
+        this.migrationInterval = migrationInterval;
+        islands = new FlappySimulation[islandCount];
+        inboxes = (ConcurrentLinkedQueue<NeuralNet>[]) new ConcurrentLinkedQueue<?>[islandCount];
+        for (int i = 0; i < islandCount; i++) {
+            // Negative indices are never used by generations, so every island gets its own seeds
+            islands[i] = new FlappySimulation(config, FlappySimulation.deriveSeed(config.seed, -1 - i, FlappySimulation.EVOLUTION));
+            inboxes[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Evolves all islands until each of them finished the given number of generations
+     *
+     * @param generations Number of generations per island
+     * @param listener    Is informed about every finished generation
+     * @throws InterruptedException If the calling thread was interrupted while waiting for the islands
+     */
+    public void run(int generations, Listener listener) throws InterruptedException {
+        Thread[] threads = new Thread[islands.length];
+        for (int i = 0; i < islands.length; i++) {
+            final int island = i;
+            threads[i] = new Thread(() -> evolve(island, generations, listener), "island-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+    }
+
+    private void evolve(int island, int generations, Listener listener) {
+        FlappySimulation simulation = islands[island];
+        ConcurrentLinkedQueue<NeuralNet> next = inboxes[(island + 1) % islands.length];
+
+        while (simulation.getGeneration() <= generations) {
+            int generation = simulation.getGeneration();
+            boolean ended;
+            do {
+                ended = simulation.step();
+            } while (!ended);
+            listener.generationEnded(island, generation, simulation.getLastScore(), simulation.getBestScore());
+
+            // The elite of the finished generation was just bred into index 0
+            if (generation % migrationInterval == 0 && islands.length > 1)
+                next.offer(new NeuralNet(simulation.getNetwork(0)));
+
+            NeuralNet migrant;
+            int slot = 0;
+            while ((migrant = inboxes[island].poll()) != null)
+                simulation.immigrate(migrant, slot++);
+        }
+    }
+
+    public int getIslandCount() {
+        return islands.length;
+    }
+
+    public FlappySimulation getIsland(int index) {
+        return islands[index];
+    }
+
+    /**
+     * Stops the worker threads of all islands
+     */
+    public void dispose() {
+        for (FlappySimulation island : islands)
+            island.dispose();
+    }
+}
@@ -0,0 +1,189 @@
+package de.tomjanke.medt;
+
+/**
+ * Static k-d tree for nearest neighbour queries over points in a flat array.
+ * <p>
+ * The tree is implicit: {@link #build(float[], int)} permutes an index array so that the middle of every range is
+ * the median of the range along the axis of its depth. Splitting at the median keeps the tree balanced,
+ * even if many points are equal, and a build or a query allocates nothing once the index array is large enough.
+ */
+class KdTree {
+
+    private final int dimensions;
+
+    private float[] points;
+    private int[] index = new int[0];
+    private int count;
+
+    /**
+     * @param dimensions Number of coordinates of every point
+     */
+    KdTree(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Builds the tree over the first <tt>count</tt> points, the points must not change until the next build
+     *
+     * @param points Coordinates of the points, point <tt>i</tt> starts at <tt>i * dimensions</tt>
+     * @param count  Number of points
+     */
+    void build(float[] points, int count) {
+        this.points = points;
+        this.count = count;
+        if (index.length < count) index = new int[count];
+        for (int i = 0; i < count; i++)
+            index[i] = i;
+        build(0, count, 0);
+    }
+
+    private void build(int from, int to, int axis) {
+        if (to - from <= 1) return;
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+        int next = axis + 1 == dimensions ? 0 : axis + 1;
+        build(from, middle, next);
+        build(middle + 1, to, next);
+    }
+
+    /**
+     * Moves the point with rank <tt>k</tt> along the axis to position <tt>k</tt>,
+     * smaller or equal ones before it and larger or equal ones after it (quickselect)
+     */
+    private void select(int low, int high, int k, int axis) {
+        while (low < high) {
+            float pivot = coordinate(index[(low + high) >>> 1], axis);
+            int i = low,
+                    j = high;
+            while (i <= j) {
+                while (coordinate(index[i], axis) < pivot) i++;
+                while (coordinate(index[j], axis) > pivot) j--;
+                if (i <= j) {
+                    int swap = index[i];
+                    index[i] = index[j];
+                    index[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    private float coordinate(int point, int axis) {
+        return points[point * dimensions + axis];
+    }
+
+    /**
+     * Offers the nearest points of the tree to a query
+     *
+     * @param query     Coordinates of the query
+     * @param offset    Start of the query in its array
+     * @param neighbors Collects the nearest points
+     * @param exclude   Point that is skipped, e.g. the query itself, or <tt>-1</tt>
+     */
+    void nearest(float[] query, int offset, Neighbors neighbors, int exclude) {
+        nearest(query, offset, neighbors, exclude, 0, count, 0);
+    }
+
+    private void nearest(float[] query, int offset, Neighbors neighbors, int exclude, int from, int to, int axis) {
+        if (from >= to) return;
+        int middle = (from + to) >>> 1,
+                point = index[middle];
+        if (point != exclude) neighbors.offer(distance(query, offset, point));
+
+        float delta = query[offset + axis] - coordinate(point, axis);
+        int next = axis + 1 == dimensions ? 0 : axis + 1;
+        // The side of the query first, the other side only if the splitting plane is closer than the farthest neighbour
+        if (delta < 0) {
+            nearest(query, offset, neighbors, exclude, from, middle, next);
+            if (delta * delta < neighbors.bound()) nearest(query, offset, neighbors, exclude, middle + 1, to, next);
+        } else {
+            nearest(query, offset, neighbors, exclude, middle + 1, to, next);
+            if (delta * delta < neighbors.bound()) nearest(query, offset, neighbors, exclude, from, middle, next);
+        }
+    }
+
+    private float distance(float[] query, int offset, int point) {
+        float sum = 0;
+        int base = point * dimensions;
+        for (int d = 0; d < dimensions; d++) {
+            float delta = query[offset + d] - points[base + d];
+            sum += delta * delta;
+        }
+        return sum;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    float[] getPoints() {
+        return points;
+    }
+
+    /**
+     * The <tt>k</tt> smallest squared distances offered so far, kept in a max-heap
+     */
+    static class Neighbors {
+
+        private final float[] heap;
+        private int size;
+
+        Neighbors(int k) {
+            heap = new float[k];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void offer(float distance) {
+            if (size < heap.length) {
+                // Sift up
+                int i = size++;
+                while (i > 0 && heap[(i - 1) >> 1] < distance) {
+                    heap[i] = heap[(i - 1) >> 1];
+                    i = (i - 1) >> 1;
+                }
+                heap[i] = distance;
+            } else if (distance < heap[0]) {
+                // Replace the farthest and sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && heap[child + 1] > heap[child]) child++;
+                    if (heap[child] <= distance) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = distance;
+            }
+        }
+
+        /**
+         * @return The squared distance a point has to beat to become a neighbour
+         */
+        float bound() {
+            return size < heap.length ? Float.POSITIVE_INFINITY : heap[0];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return The mean distance of the neighbours, <tt>0</tt> without any
+         */
+        float mean() {
+            if (size == 0) return 0;
+            float sum = 0;
+            for (int i = 0; i < size; i++)
+                sum += (float) Math.sqrt(heap[i]);
+            return sum / size;
+        }
+    }
+}
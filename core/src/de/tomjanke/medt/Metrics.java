@@ -0,0 +1,238 @@
+package de.tomjanke.medt;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where a {@link FlappySimulation} spends its time, collected per generation.
+ * <p>
+ * The simulation only measures its phases while a collector is attached with {@link FlappySimulation#setMetrics(Metrics)}.
+ * Everything is collected on the simulation thread, except the render time, which the viewer adds from its own thread.
+ * The values of the last finished generation are kept in a {@link Generation} until the next one finishes.
+ */
+public class Metrics {
+
+    private final GarbageCollectorMXBean[] collectors;
+    private final com.sun.management.ThreadMXBean threads;
+
+    private final int[] fitness;
+
+    private final AtomicLong renderNanos = new AtomicLong(),
+            frames = new AtomicLong();
+
+    private final Generation last = new Generation();
+
+    private boolean started;
+    private long ticks,
+            birdTicks,
+            stepNanos,
+            forwardNanos,
+            collisionNanos,
+            gcCount,
+            gcMillis,
+            allocated;
+    private int halfLife,
+            population;
+
+    /**
+     * @param birdCount Number of birds of the simulation
+     */
+    public Metrics(int birdCount) {
+        fitness = new int[birdCount];
+        collectors = ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    /**
+     * Counts one step of the simulation
+     *
+     * @param alive     Number of birds that were simulated
+     * @param survivors Number of birds that are still alive after the step
+     * @param nanos     Time of the whole step
+     * @param forward   Time of the forward passes, summed over all threads
+     * @param collision Time of the collision checks, summed over all threads
+     */
+    void step(int alive, int survivors, long nanos, long forward, long collision) {
+        if (!started) start(alive);
+        ticks++;
+        birdTicks += alive;
+        stepNanos += nanos;
+        forwardNanos += forward;
+        collisionNanos += collision;
+        if (halfLife == 0 && survivors * 2 <= population) halfLife = (int) ticks;
+    }
+
+    /**
+     * Counts one frame of the viewer, may be called from any thread
+     */
+    public void frame(long nanos) {
+        renderNanos.addAndGet(nanos);
+        frames.incrementAndGet();
+    }
+
+    /**
+     * Collects the fitness of every bird, must be called before it is reset for the next generation
+     */
+    void fitness(Population networks, int survivors) {
+        for (int i = 0; i < networks.size(); i++)
+            fitness[i] = networks.getFitness(i);
+        last.survivors = survivors;
+    }
+
+    /**
+     * Finishes the current generation and starts counting the next one
+     *
+     * @param generation The generation that ended
+     * @param breed      Time it took to breed the next generation
+     */
+    void finish(int generation, long breed) {
+        if (!started) start(0);
+        Generation last = this.last;
+        last.generation = generation;
+        last.ticks = ticks;
+        last.seconds = stepNanos / 1e9;
+        last.ticksPerSecond = stepNanos > 0 ? ticks * 1e9 / stepNanos : 0;
+        last.forwardNanos = birdTicks > 0 ? (double) forwardNanos / birdTicks : 0;
+        last.collisionNanos = birdTicks > 0 ? (double) collisionNanos / birdTicks : 0;
+        last.breedMillis = breed / 1e6;
+        long frameCount = frames.getAndSet(0);
+        long render = renderNanos.getAndSet(0);
+        last.renderMillis = frameCount > 0 ? render / 1e6 / frameCount : 0;
+        last.gcCount = gcCount() - gcCount;
+        last.gcMillis = gcMillis() - gcMillis;
+        last.allocationRate = threads != null && stepNanos > 0 ? (allocated() - allocated) / (stepNanos / 1e9) : 0;
+        last.halfLife = halfLife;
+
+        // The median is found on a sorted copy, so the fitness of the birds stays in place
+        Arrays.sort(fitness);
+        long sum = 0;
+        for (int f : fitness) sum += f;
+        last.bestFitness = fitness[fitness.length - 1];
+        last.meanFitness = (double) sum / fitness.length;
+        last.medianFitness = fitness.length % 2 == 1 ? fitness[fitness.length / 2]
+                : (fitness[fitness.length / 2 - 1] + fitness[fitness.length / 2]) / 2.0;
+
+        started = false;
+    }
+
+    /**
+     * Drops what was counted of an unfinished generation, e.g. when the simulation restarts
+     */
+    void discard() {
+        started = false;
+    }
+
+    /**
+     * @param population Number of birds that are simulated in the first step
+     */
+    private void start(int population) {
+        started = true;
+        this.population = population;
+        ticks = birdTicks = stepNanos = forwardNanos = collisionNanos = 0;
+        halfLife = 0;
+        gcCount = gcCount();
+        gcMillis = gcMillis();
+        allocated = allocated();
+    }
+
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors)
+            count += Math.max(0, collector.getCollectionCount());
+        return count;
+    }
+
+    private long gcMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : collectors)
+            time += Math.max(0, collector.getCollectionTime());
+        return time;
+    }
+
+    /**
+     * @return Bytes allocated by the thread that steps the simulation, the workers of the chunks are not counted
+     */
+    private long allocated() {
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * @return The last finished generation, it is overwritten when the next one finishes
+     */
+    public Generation getLast() {
+        return last;
+    }
+
+    /**
+     * Everything that was measured in one generation
+     */
+    public static class Generation {
+
+        public int generation;
+        public long ticks;
+
+        /**
+         * Time spent in the steps and ticks per second of that time
+         */
+        public double seconds,
+                ticksPerSecond;
+
+        /**
+         * Nanoseconds per simulated bird and tick
+         */
+        public double forwardNanos,
+                collisionNanos;
+
+        public double breedMillis;
+
+        /**
+         * Average time of a frame of the viewer, <tt>0</tt> without one
+         */
+        public double renderMillis;
+
+        public long gcCount,
+                gcMillis;
+
+        /**
+         * Bytes per second allocated by the simulation thread, <tt>0</tt> if the JVM does not count them
+         */
+        public double allocationRate;
+
+        public int bestFitness;
+        public double meanFitness,
+                medianFitness;
+
+        /**
+         * Birds alive when the generation ended, and the tick half of the simulated birds had died in
+         */
+        public int survivors,
+                halfLife;
+
+        /**
+         * Copies the values of another generation
+         */
+        public void set(Generation other) {
+            generation = other.generation;
+            ticks = other.ticks;
+            seconds = other.seconds;
+            ticksPerSecond = other.ticksPerSecond;
+            forwardNanos = other.forwardNanos;
+            collisionNanos = other.collisionNanos;
+            breedMillis = other.breedMillis;
+            renderMillis = other.renderMillis;
+            gcCount = other.gcCount;
+            gcMillis = other.gcMillis;
+            allocationRate = other.allocationRate;
+            bestFitness = other.bestFitness;
+            meanFitness = other.meanFitness;
+            medianFitness = other.medianFitness;
+            survivors = other.survivors;
+            halfLife = other.halfLife;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.tomjanke.medt;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Appends the {@link Metrics} of every generation to a file, one line per generation.
+ * Files ending in <tt>.csv</tt> get a header and comma separated values, all others a JSON object per line.
+ */
+public class MetricsWriter implements Closeable {
+
+    private static final String[] COLUMNS = {
+            "generation", "ticks", "seconds", "ticksPerSecond", "forwardNsPerBird", "collisionNsPerBird",
+            "breedMs", "renderMs", "gcCount", "gcMs", "allocationBytesPerSecond",
+            "bestFitness", "meanFitness", "medianFitness", "survivors", "halfLifeTicks"
+    };
+
+    private final BufferedWriter writer;
+    private final boolean csv;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * @param file File to write to, an existing one is overwritten
+     */
+    public MetricsWriter(File file) throws IOException {
+        writer = new BufferedWriter(new FileWriter(file));
+        csv = file.getName().toLowerCase(Locale.ROOT).endsWith(".csv");
+        if (csv) {
+            writer.write(String.join(",", COLUMNS));
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes the last finished generation and flushes it, so a running training can be watched
+     */
+    public void write(Metrics metrics) throws IOException {
+        Metrics.Generation g = metrics.getLast();
+        line.setLength(0);
+        if (!csv) line.append('{');
+        int column = 0;
+        column = append(column, g.generation);
+        column = append(column, g.ticks);
+        column = append(column, g.seconds);
+        column = append(column, g.ticksPerSecond);
+        column = append(column, g.forwardNanos);
+        column = append(column, g.collisionNanos);
+        column = append(column, g.breedMillis);
+        column = append(column, g.renderMillis);
+        column = append(column, g.gcCount);
+        column = append(column, g.gcMillis);
+        column = append(column, g.allocationRate);
+        column = append(column, g.bestFitness);
+        column = append(column, g.meanFitness);
+        column = append(column, g.medianFitness);
+        column = append(column, g.survivors);
+        append(column, g.halfLife);
+        if (!csv) line.append('}');
+        writer.append(line);
+        writer.newLine();
+        writer.flush();
+    }
+
+    private int append(int column, long value) {
+        separate(column);
+        line.append(value);
+        return column + 1;
+    }
+
+    private int append(int column, double value) {
+        separate(column);
+        // Three decimals are plenty and keep the locale out of the file
+        line.append(Math.round(value * 1000) / 1000.0);
+        return column + 1;
+    }
+
+    private void separate(int column) {
+        if (column > 0) line.append(',');
+        if (!csv) line.append('"').append(COLUMNS[column]).append("\":");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
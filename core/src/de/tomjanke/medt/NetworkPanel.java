@@ -0,0 +1,183 @@
+package de.tomjanke.medt;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.viewport.Viewport;
+
+import java.util.Arrays;
+
+/**
+ * The network of the showcased bird, drawn right of the game.
+ * <p>
+ * The weights only change when another bird is showcased or a new generation starts, so the background and the
+ * edges are drawn into a {@link FrameBuffer} once and every frame only draws that texture and the neurons.
+ */
+class NetworkPanel {
+
+    static final int X = 512,
+            WIDTH = 320,
+            HEIGHT = 512;
+
+    private final TextureRegion pixel,
+            circle;
+    private final Matrix4 projection = new Matrix4().setToOrtho2D(0, 0, WIDTH, HEIGHT);
+
+    private FrameBuffer buffer;
+    private TextureRegion cache;
+
+    /**
+     * The network that is drawn into the cache
+     */
+    private float[] weights = new float[0];
+    private Topology topology;
+    private boolean valid;
+
+    private float spacing,
+            radius;
+    private int redraws;
+
+    /**
+     * @param pixel  A white region that is stretched to lines and rectangles
+     * @param circle A white circle
+     */
+    NetworkPanel(TextureRegion pixel, TextureRegion circle) {
+        this.pixel = pixel;
+        this.circle = circle;
+    }
+
+    /**
+     * Draws the edges into the cache again if the showcased network or the size of the screen changed,
+     * must be called outside of {@link SpriteBatch#begin()} and {@link SpriteBatch#end()}
+     */
+    void update(SpriteBatch batch, Snapshot snapshot, Viewport viewport) {
+        // The cache has the resolution of the panel on screen
+        int width = Math.max(1, Math.round(viewport.getScreenWidth() * WIDTH / viewport.getWorldWidth())),
+                height = Math.max(1, Math.round(viewport.getScreenHeight() * HEIGHT / viewport.getWorldHeight()));
+        if (buffer == null || buffer.getWidth() != width || buffer.getHeight() != height) {
+            if (buffer != null) buffer.dispose();
+            buffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+            cache = new TextureRegion(buffer.getColorBufferTexture());
+            cache.flip(false, true);
+            valid = false;
+        }
+
+        if (snapshot.first == -1) return;
+        if (valid && snapshot.topology.equals(topology) && Arrays.equals(snapshot.weights, weights)) return;
+
+        topology = snapshot.topology;
+        if (weights.length != snapshot.weights.length) weights = new float[snapshot.weights.length];
+        System.arraycopy(snapshot.weights, 0, weights, 0, weights.length);
+        layout();
+
+        buffer.begin();
+        Gdx.gl.glClearColor(Color.DARK_GRAY.r, Color.DARK_GRAY.g, Color.DARK_GRAY.b, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        batch.setProjectionMatrix(projection);
+        batch.begin();
+        drawEdges(batch);
+        batch.end();
+        batch.setColor(Color.WHITE);
+        buffer.end();
+        viewport.apply();
+
+        valid = true;
+        redraws++;
+    }
+
+    /**
+     * Draws the panel, must be called between {@link SpriteBatch#begin()} and {@link SpriteBatch#end()}
+     */
+    void draw(SpriteBatch batch, Snapshot snapshot) {
+        if (snapshot.first == -1 || !valid) {
+            batch.setColor(Color.DARK_GRAY);
+            batch.draw(pixel, X, 0, WIDTH, HEIGHT);
+            batch.setColor(Color.WHITE);
+            return;
+        }
+
+        batch.draw(cache, X, 0, WIDTH, HEIGHT);
+        for (int l = 0; l < topology.getLayerCount(); l++)
+            for (int i = 0; i < topology.getSize(l); i++) {
+                float x = X + getX(l),
+                        y = HEIGHT - (i + 1) * spacing,
+                        neuron = snapshot.getNeuron(l, i);
+                batch.setColor(Color.WHITE);
+                circle(batch, x, y, radius);
+                batch.setColor(color(neuron));
+                circle(batch, x, y, size(neuron, 512, radius * .3f, radius));
+            }
+        batch.setColor(Color.WHITE);
+    }
+
+    /**
+     * @return How often the edges were drawn into the cache
+     */
+    int getRedraws() {
+        return redraws;
+    }
+
+    void dispose() {
+        if (buffer != null) buffer.dispose();
+    }
+
+    private void layout() {
+        // Up to 8 neurons per layer keep the original spacing, larger layers are squeezed
+        int maxSize = 0;
+        for (int l = 0; l < topology.getLayerCount(); l++)
+            maxSize = Math.max(maxSize, topology.getSize(l));
+        spacing = maxSize <= 8 ? 60 : 480f / maxSize;
+        radius = maxSize <= 8 ? 20 : spacing / 3;
+    }
+
+    private void drawEdges(SpriteBatch batch) {
+        float maxWeight = 0;
+        for (float f : weights)
+            if (Math.abs(f) > maxWeight) maxWeight = Math.abs(f);
+
+        for (int l = 0; l < topology.getLayerCount() - 1; l++) {
+            int size = topology.getSize(l),
+                    offset = topology.getWeightOffset(l);
+            for (int i = 0; i < size; i++)
+                for (int n = 0; n < topology.getSize(l + 1); n++) {
+                    float weight = weights[offset + n * size + i];
+                    batch.setColor(color(weight));
+                    line(batch, getX(l), HEIGHT - (i + 1) * spacing, getX(l + 1), HEIGHT - (n + 1) * spacing,
+                            size(weight, maxWeight, 1, radius * .3f));
+                }
+        }
+    }
+
+    private float getX(int layer) {
+        return 60 + layer * 200f / (topology.getLayerCount() - 1);
+    }
+
+    /**
+     * Draws a line as a stretched and rotated block
+     */
+    private void line(SpriteBatch batch, float x1, float y1, float x2, float y2, float width) {
+        float dx = x2 - x1,
+                dy = y2 - y1;
+        batch.draw(pixel, x1, y1 - width / 2, 0, width / 2, (float) Math.sqrt(dx * dx + dy * dy), width, 1, 1, MathUtils.atan2(dy, dx) * MathUtils.radiansToDegrees);
+    }
+
+    private void circle(SpriteBatch batch, float x, float y, float radius) {
+        batch.draw(circle, x - radius, y - radius, radius * 2, radius * 2);
+    }
+
+    private static Color color(float val) {
+        return val > 0 ? Color.GREEN : (val < 0 ? Color.FIREBRICK : Color.WHITE);
+    }
+
+    private static float size(float val, float maxVal, float minSize, float maxSize) {
+        if (Math.abs(val) > maxVal) return maxSize;
+        float perc = Math.abs(val) / maxVal;
+        return minSize + (maxSize - minSize) * perc;
+    }
+}
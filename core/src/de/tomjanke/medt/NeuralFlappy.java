@@ -5,265 +5,234 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.BitmapFont;
-import com.badlogic.gdx.graphics.g2d.GlyphLayout;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.graphics.g2d.*;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 
-import javax.swing.*;
-import java.util.ArrayList;
-import java.util.Random;
-
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The viewer. The simulation runs on a {@link SimulationThread}, every frame only draws its latest {@link Snapshot}.
+ * <p>
+ * Everything is drawn in a single {@link SpriteBatch} pass: the sprites come from one atlas that is packed at start,
+ * the network from a small texture with a white block and a circle, and the HUD from the font.
+ * The edges of the network are cached by the {@link NetworkPanel}.
+ */
 public class NeuralFlappy extends ApplicationAdapter {
 
-    private static final float TICK = 1 / 60f;
-    private static final int BIRD_COUNT = 20;
-    private static final int HALF_PIPE_HEIGHT = 60;
+    private static final String CHECKPOINT = "network.dat";
     private static final String[] HELP = new String[]{
-            "CTRL + A", "Load Network",
-            "CTRL + S", "Save Network",
+            "CTRL + A", "Load Population",
+            "CTRL + S", "Save Population",
             "CTRL + R", "Reset",
             "B", "Reset Speed",
             "N", "Decrease speed",
             "M", "Increase speed",
+            "T", "Max throughput",
+            "F", "Finish generation",
             "SPACE", "Pause"
     };
 
+    private final FlappyConfiguration config;
+    private final File metricsFile;
+    private final int checkpointGenerations;
+    private final float checkpointSeconds;
+
     private Viewport viewport;
 
     private SpriteBatch batch;
-    private ShapeRenderer shape;
 
-    private Random random;
+    private PixmapPacker packer;
+    private TextureAtlas atlas;
+    private Texture shapeTexture;
+
+    private TextureRegion background,
+            ground,
+            pipe,
+            pipeFlipped;
 
-    private Texture backgroundTexture,
-            groundTexture,
-            pipeTexture;
+    private TextureRegion[] bird,
+            birdSelected;
 
-    private Texture[] birdTexture,
-            birdTextureSelected;
+    private NetworkPanel panel;
 
     private BitmapFont font;
-    private GlyphLayout glyph;
 
-    private Rectangle birdRect, pipeRectU, pipeRectL;
+    /**
+     * HUD texts, they are only laid out again when their value changes
+     */
+    private Label score,
+            bestScore,
+            birds,
+            generation,
+            bestScoreGen,
+            showcased,
+            speed,
+            ticksPerSecond,
+            fps,
+            debugTicks,
+            sprites,
+            redraws;
+    private GlyphLayout status,
+            pausedTitle,
+            pausedHint,
+            helpHint,
+            metrics;
+    private GlyphLayout[] help;
+    private final StringBuilder metricsText = new StringBuilder();
+    private int metricsGeneration = -1;
 
     private float birdTextureTime,
-            countdownTime,
-            pipeX,
-            groundX,
-            backgroundX;
+            statusTime;
 
-    private int iterationsPerTick = 1;
+    private int iterationsPerTick = 1,
+            lastGeneration;
 
-    private float[] heights,
-            velocity,
-            birds;
+    private SimulationThread simulation;
 
-    private NeuralNet[] networks;
-
-    private boolean[] dead;
-
-    private boolean scoreLock;
-    private int score = 0,
-            generation = 0,
-            bestScore = 0,
-            bestScoreGen = 0;
+    private int savedCheckpoints;
+    private IOException checkpointError;
 
     private boolean drawHelp = false,
             drawDebug = false,
+            drawMetrics = false,
+            maxThroughput = false,
             paused = true;
 
-    {
-        birds = new float[BIRD_COUNT];
-        velocity = new float[BIRD_COUNT];
-        networks = new NeuralNet[BIRD_COUNT];
-        heights = new float[4];
-        dead = new boolean[BIRD_COUNT];
-        for (int i = 0; i < BIRD_COUNT; i++)
-            networks[i] = new NeuralNet();
+    public NeuralFlappy() {
+        this(new FlappyConfiguration());
+    }
+
+    public NeuralFlappy(FlappyConfiguration config) {
+        this(config, null);
+    }
+
+    /**
+     * @param metricsFile File the metrics of every generation are written to, see {@link MetricsWriter}, or <tt>null</tt>
+     */
+    public NeuralFlappy(FlappyConfiguration config, File metricsFile) {
+        this(config, metricsFile, 0, 0);
+    }
+
+    /**
+     * @param metricsFile           File the metrics of every generation are written to, see {@link MetricsWriter}, or <tt>null</tt>
+     * @param checkpointGenerations Number of generations between two automatic checkpoints, 0 to only save on CTRL+S
+     * @param checkpointSeconds     Number of seconds between two automatic checkpoints, 0 to only save on CTRL+S
+     */
+    public NeuralFlappy(FlappyConfiguration config, File metricsFile, int checkpointGenerations, float checkpointSeconds) {
+        this.config = config;
+        this.metricsFile = metricsFile;
+        this.checkpointGenerations = checkpointGenerations;
+        this.checkpointSeconds = checkpointSeconds;
     }
 
     @Override
     public void create() {
-        random = new Random();
+        try {
+            simulation = new SimulationThread(config, new File(CHECKPOINT), checkpointGenerations, checkpointSeconds, metricsFile);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("The metrics file could not be created", e);
+        }
 
         viewport = new FitViewport(512 + 320, 512);
         viewport.update(Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), true);
 
-        backgroundTexture = new Texture("background.png");
-        groundTexture = new Texture("ground.png");
-        birdTexture = new Texture[]{
-                new Texture("bird1.png"),
-                new Texture("bird2.png"),
-                new Texture("bird3.png")
-        };
-        birdTextureSelected = new Texture[]{
-                new Texture("bird-sel1.png"),
-                new Texture("bird-sel2.png"),
-                new Texture("bird-sel3.png")
-        };
-        pipeTexture = new Texture("pipe.png");
+        // All sprites share one texture, so the batch never has to switch between them
+        packer = new PixmapPacker(1024, 1024, Pixmap.Format.RGBA8888, 2, true);
+        for (String name : new String[]{"background", "ground", "pipe", "bird1", "bird2", "bird3", "bird-sel1", "bird-sel2", "bird-sel3"}) {
+            Pixmap pixmap = new Pixmap(Gdx.files.internal(name + ".png"));
+            packer.pack(name, pixmap);
+            pixmap.dispose();
+        }
+        atlas = packer.generateTextureAtlas(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest, false);
+        background = atlas.findRegion("background");
+        ground = atlas.findRegion("ground");
+        pipe = atlas.findRegion("pipe");
+        pipeFlipped = new TextureRegion(pipe);
+        pipeFlipped.flip(false, true);
+        bird = new TextureRegion[]{atlas.findRegion("bird1"), atlas.findRegion("bird2"), atlas.findRegion("bird3")};
+        birdSelected = new TextureRegion[]{atlas.findRegion("bird-sel1"), atlas.findRegion("bird-sel2"), atlas.findRegion("bird-sel3")};
+
+        // A smooth circle and a white block for the panel, the network edges are stretched and rotated blocks
+        Pixmap shapes = new Pixmap(136, 128, Pixmap.Format.RGBA8888);
+        shapes.setColor(Color.WHITE);
+        shapes.fillCircle(64, 64, 63);
+        shapes.fillRectangle(130, 0, 6, 6);
+        shapeTexture = new Texture(shapes);
+        shapeTexture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        shapes.dispose();
+        panel = new NetworkPanel(new TextureRegion(shapeTexture, 132, 2, 2, 2), new TextureRegion(shapeTexture, 0, 0, 128, 128));
 
         batch = new SpriteBatch();
-        shape = new ShapeRenderer();
-
-        birdRect = new Rectangle();
-        pipeRectU = new Rectangle();
-        pipeRectL = new Rectangle();
 
         font = new BitmapFont(Gdx.files.internal("font.fnt"));
         font.getData().setScale(.5f);
         font.getRegion().getTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
 
-        glyph = new GlyphLayout();
+        score = new Label(font);
+        bestScore = new Label(font);
+        birds = new Label(font);
+        generation = new Label(font);
+        bestScoreGen = new Label(font);
+        showcased = new Label(font);
+        speed = new Label(font);
+        ticksPerSecond = new Label(font);
+        fps = new Label(font);
+        debugTicks = new Label(font);
+        sprites = new Label(font);
+        redraws = new Label(font);
+        status = new GlyphLayout();
+        metrics = new GlyphLayout();
+        pausedTitle = new GlyphLayout(font, "– PAUSED –");
+        pausedHint = new GlyphLayout(font, "SPACE to resume");
+        helpHint = new GlyphLayout(font, "F1 / H – Help");
+        help = new GlyphLayout[HELP.length];
+        for (int i = 0; i < HELP.length; i++)
+            help[i] = new GlyphLayout(font, HELP[i]);
 
         viewport.apply();
-
-        reset();
-    }
-
-    private void reset() {
-        birdTextureTime = 0;
-        pipeX = 200;
-        groundX = 0;
-        backgroundX = 0;
-        score = 0;
-        scoreLock = false;
-        countdownTime = iterationsPerTick != 1 ? .1f : 1f;
-        generation++;
-        for (int i = 0; i < birds.length; i++) {
-            birds[i] = 256;
-            velocity[i] = 2f;
-            dead[i] = false;
-        }
-        for (int i = 0; i < heights.length; i++)
-            heights[i] = 200 + random.nextFloat() * 200;
-    }
-
-    private void breed() {
-        ArrayList<NeuralNet> bestNetworks = new ArrayList<>();
-        NeuralNet best = null;
-        for (NeuralNet net : networks)
-            if (best == null || best.getFitness() < net.getFitness()) best = net;
-
-        if (best == null) {
-            JOptionPane.showMessageDialog(null, "Well, there was no best bird found. So we'll just use the first one.", "Warning", JOptionPane.WARNING_MESSAGE);
-            best = networks[0];
-        }
-
-        int threshold = (int) (best.getFitness() * 0.8);
-
-        for (NeuralNet net : networks)
-            if (net.getFitness() >= threshold && !best.equals(net)) bestNetworks.add(net);
-
-        for (NeuralNet net : bestNetworks)
-            best.breed(net);
-
-        for (int i = 0; i < networks.length; i++)
-            networks[i] = i == 0 ? best : new NeuralNet(best, .3f);
-
-        for (NeuralNet net : networks)
-            net.resetFitness();
-
-        bestNetworks.clear();
     }
 
     @Override
     public void render() {
+        long frameStart = System.nanoTime();
         Gdx.gl.glClearColor(0, 0, 0, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
-        if (countdownTime > 0 && !paused) countdownTime -= TICK;
-
-        int alive = 0;
-        float currentHeight;
-
-        boolean play = countdownTime <= 0;
-
-        if (play && !paused) for (int iter = 0; iter < iterationsPerTick; iter++) {
-            alive = 0;
-
-            currentHeight = heights[0];
-            if (pipeX < 50) {
-                currentHeight = heights[1];
-                if (!scoreLock) {
-                    score++;
-                    if (bestScore < score) {
-                        bestScore = score;
-                        bestScoreGen = generation;
-                    }
-                    scoreLock = true;
-                }
-            }
-
-            groundX -= TICK * 80;
-            if (groundX < -336) groundX += 336;
-            backgroundX -= TICK * 40;
-            if (backgroundX < -288) backgroundX += 288;
-
-            pipeX -= TICK * 80;
-            float pipePosition = pipeX;
-            if (pipeX < 100) pipePosition += 200;
-            pipePosition -= 100;
-
-            for (int i = 0; i < birds.length; i++)
-                if (!dead[i]) {
-                    velocity[i] -= TICK * 10f;
-                    if (networks[i].activate(new float[]{birds[i], currentHeight, pipePosition, velocity[i]}) > 0)
-                        if (birds[i] <= 420 && velocity[i] < 1.2f)
-                            velocity[i] = 4f;
-                    birds[i] += velocity[i];
-                }
+        Snapshot snapshot = simulation.read();
+        if (snapshot.generation != lastGeneration) {
+            lastGeneration = snapshot.generation;
+            birdTextureTime = 0;
+        }
 
+        // Ground and background scroll with the ticks of the generation
+        float groundX = -(snapshot.ticks * FlappySimulation.TICK * 80 % 336),
+                backgroundX = -(snapshot.ticks * FlappySimulation.TICK * 40 % 288);
 
-            pipeRectU.set(pipeX, heights[0] + HALF_PIPE_HEIGHT, 52, 320);
-            pipeRectL.set(pipeX, heights[0] - HALF_PIPE_HEIGHT - 320, 52, 320);
-            for (int i = 0; i < birds.length; i++) {
-                birdRect.set(100, birds[i] - 12, 34, 24);
-                if (birdRect.overlaps(pipeRectL) || birdRect.overlaps(pipeRectU)) dead[i] = true;
-                else if (birds[i] < 100) dead[i] = true;
-                if (!dead[i]) networks[i].addFitness();
-            }
+        float pipeX = snapshot.pipeX;
+        int alive = snapshot.alive;
 
-            boolean allDead = true;
-            for (boolean b : dead)
-                if (!b) {
-                    allDead = false;
-                    alive++;
-                }
-
-            if (allDead) {
-                breed();
-                reset();
-                break;
-            }
-
-            if (pipeX <= -54) {
-                pipeX += 200;
-                for (int i = 1; i < heights.length; i++)
-                    heights[i - 1] = heights[i];
-                heights[heights.length - 1] = 200 + random.nextFloat() * 200;
-                scoreLock = false;
-            }
-        }
+        panel.update(batch, snapshot, viewport);
 
         batch.setProjectionMatrix(viewport.getCamera().combined);
         batch.begin();
         for (float x = backgroundX; x < 512; x += 288)
-            batch.draw(backgroundTexture, x, 0, 288, 512);
+            batch.draw(background, x, 0, 288, 512);
 
-        for (int i = 0; i < heights.length; i++) {
-            batch.draw(pipeTexture, pipeX + 200 * i, heights[i] + HALF_PIPE_HEIGHT, 52, 320, 0, 0, 52, 320, false, true);
-            batch.draw(pipeTexture, pipeX + 200 * i, heights[i] - HALF_PIPE_HEIGHT - 320, 52, 320);
+        for (int i = 0; i < snapshot.heights.length; i++) {
+            float height = snapshot.heights[i];
+            batch.draw(pipeFlipped, pipeX + 200 * i, height + FlappySimulation.HALF_PIPE_HEIGHT, 52, 320);
+            batch.draw(pipe, pipeX + 200 * i, height - FlappySimulation.HALF_PIPE_HEIGHT - 320, 52, 320);
         }
 
         for (float x = groundX; x < 512; x += 336)
-            batch.draw(groundTexture, x, 0, 336, 112);
+            batch.draw(ground, x, 0, 336, 112);
 
         birdTextureTime += 0.2;
 
@@ -273,185 +242,146 @@ public class NeuralFlappy extends ApplicationAdapter {
         if (birdTextureTimeI == 2) textureIndex = 2;
         if (birdTextureTime >= 4) birdTextureTime -= 4;
 
-        int first = -1;
-        for (int i = 0; i < birds.length; i++)
-            if (!dead[i])
-                if (first == -1) first = i;
-                else batch.draw(birdTexture[textureIndex], 100, birds[i] - 12);
-
+        // Birds in the same pixel row cover each other, so every occupied row is drawn once
+        for (int i = 0; i < snapshot.rowCount; i++)
+            batch.draw(bird[textureIndex], 100, snapshot.rows[i] - 12);
 
-        batch.draw(birdTextureSelected[textureIndex], 100, birds[first] - 12);
+        int first = snapshot.first;
+        if (first != -1) batch.draw(birdSelected[textureIndex], 100, snapshot.firstBird - 12);
 
-        batch.end();
-
-        shape.setProjectionMatrix(viewport.getCamera().combined);
-        shape.begin(ShapeRenderer.ShapeType.Filled);
-
-        shape.setColor(Color.DARK_GRAY);
-        shape.rect(512, 0, 320, 512);
-
-        NeuralNet net = null;
-        for (int i = 0; i < dead.length; i++)
-            if (!dead[i]) {
-                net = networks[i];
-                break;
-            }
-
-        if (net != null) {
-            float[] input = net.getInputLayer(),
-                    hidden = net.getHiddenLayer(),
-                    weight1 = net.getWeightLayer1(),
-                    weight2 = net.getWeightLayer2();
-            float output = net.getOutputLayer();
-
-            float _w = viewport.getWorldWidth(),
-                    _h = viewport.getWorldHeight();
-
-            float maxWeight = 0;
-            for (float f : weight1)
-                if (Math.abs(f) > maxWeight) maxWeight = Math.abs(f);
-            for (float f : weight2)
-                if (Math.abs(f) > maxWeight) maxWeight = Math.abs(f);
-
-            for (int i = 0; i < input.length; i++)
-                for (int h = 0; h < hidden.length; h++) {
-                    color(shape, weight1[h * input.length + i]);
-                    shape.rectLine(_w - 260, _h - (i + 1) * 60, _w - 160, _h - (h + 1) * 60, size(weight1[h * input.length + i], maxWeight, 1, 6));
-                }
-
-            for (int h = 0; h < hidden.length; h++) {
-                color(shape, weight2[h]);
-                shape.rectLine(_w - 160, _h - (h + 1) * 60, _w - 60, _h - 60, size(weight2[h], maxWeight, 1, 6));
-            }
-
-            for (int i = 0; i < input.length; i++) {
-                shape.setColor(Color.WHITE);
-                shape.circle(_w - 260, _h - (i + 1) * 60, 20);
-                color(shape, input[i]);
-                shape.circle(_w - 260, _h - (i + 1) * 60, size(input[i], 512, 6, 20));
-            }
-
-            for (int i = 0; i < hidden.length; i++) {
-                shape.setColor(Color.WHITE);
-                shape.circle(_w - 160, _h - (i + 1) * 60, 20);
-                color(shape, hidden[i]);
-                shape.circle(_w - 160, _h - (i + 1) * 60, size(hidden[i], 512, 6, 20));
-            }
-
-            shape.setColor(Color.WHITE);
-            shape.circle(_w - 60, _h - 60, 20);
-            color(shape, output);
-            shape.circle(_w - 60, _h - 60, size(output, 512, 6, 20));
-        }
-
-        shape.end();
-
-        batch.begin();
+        panel.draw(batch, snapshot);
 
         int pad = 4;
-
-        String txt = String.valueOf(score) + " P";
-        glyph.setText(font, txt);
-        font.draw(batch, glyph, 256 - glyph.width / 2, 45 - pad);
-
-        txt = String.valueOf(bestScore) + " P";
-        glyph.setText(font, txt);
-        font.draw(batch, glyph, 384 - glyph.width / 2, 45 - pad);
-
-        txt = String.valueOf(alive) + (alive == 1 ? " Bird" : " Birds");
-        glyph.setText(font, txt);
-        font.draw(batch, glyph, 128 - glyph.width / 2, 45 - pad);
-
-        txt = String.valueOf(generation) + ". Gen";
-        glyph.setText(font, txt);
-        font.draw(batch, glyph, 256 - glyph.width / 2, 45 + glyph.height + pad);
-
-        txt = String.valueOf(bestScoreGen) + ". Gen";
-        glyph.setText(font, txt);
-        font.draw(batch, glyph, 384 - glyph.width / 2, 45 + glyph.height + pad);
-
-        txt = String.valueOf(first + 1) + ". Bird";
-        glyph.setText(font, txt);
-        font.draw(batch, glyph, 512 + 160 - glyph.width / 2, 45 - pad);
-
-        if (paused) {
-            txt = "– PAUSED –";
-            glyph.setText(font, txt);
-            font.draw(batch, glyph, 256 - glyph.width / 2, 256 + glyph.height + pad);
-
-            txt = "SPACE to resume";
-            glyph.setText(font, txt);
-            font.draw(batch, glyph, 256 - glyph.width / 2, 256 - pad);
+        float lineHeight = pausedTitle.height;
+
+        draw(score.set(snapshot.score, " P"), 256, 45 - pad);
+        draw(bestScore.set(snapshot.bestScore, " P"), 384, 45 - pad);
+        draw(birds.set(alive, alive == 1 ? " Bird" : " Birds"), 128, 45 - pad);
+        draw(generation.set(snapshot.generation, ". Gen"), 256, 45 + lineHeight + pad);
+        draw(bestScoreGen.set(snapshot.bestScoreGen, ". Gen"), 384, 45 + lineHeight + pad);
+        draw(showcased.set(first + 1, ". Bird"), 512 + 160, 45 - pad);
+
+        if (snapshot.paused) {
+            draw(pausedTitle, 256, 256 + lineHeight + pad);
+            draw(pausedHint, 256, 256 - pad);
         }
 
         if (!drawHelp) {
-            txt = "F1 / H – Help";
-            glyph.setText(font, txt);
-            font.draw(batch, glyph, 512 + 160 - glyph.width / 2, 45 + glyph.height + pad);
+            draw(helpHint, 512 + 160, 45 + lineHeight + pad);
         } else {
             for (int i = 0; i < HELP.length / 2; i++) {
-                txt = HELP[i * 2];
-                glyph.setText(font, txt);
-                font.draw(batch, glyph, 512 + pad, 45 + (glyph.height + pad) * (i + 1));
-                font.draw(batch, HELP[i * 2 + 1], 620 + pad, 45 + (glyph.height + pad) * (i + 1));
+                font.draw(batch, help[i * 2], 512 + pad, 45 + (lineHeight + pad) * (i + 1));
+                font.draw(batch, help[i * 2 + 1], 620 + pad, 45 + (lineHeight + pad) * (i + 1));
             }
         }
 
-        if (iterationsPerTick != 1) {
-            txt = String.valueOf(iterationsPerTick) + "x";
-            glyph.setText(font, txt);
-            font.draw(batch, glyph, 128 - glyph.width / 2, 45 + glyph.height + pad);
+        if (maxThroughput || snapshot.fastForward)
+            draw(ticksPerSecond.set(snapshot.ticksPerSecond, " t/s"), 128, 45 + lineHeight + pad);
+        else if (iterationsPerTick != 1)
+            draw(speed.set(iterationsPerTick, "x"), 128, 45 + lineHeight + pad);
+
+        if (statusTime > 0) {
+            statusTime -= Gdx.graphics.getDeltaTime();
+            draw(status, 256, 480);
         }
 
         if (drawDebug) {
-            font.draw(batch, Gdx.graphics.getFramesPerSecond() + " fps", 10, 502);
+            font.draw(batch, fps.set(Gdx.graphics.getFramesPerSecond(), " fps"), 10, 502);
+            font.draw(batch, debugTicks.set(snapshot.ticksPerSecond, " ticks/s"), 10, 502 - lineHeight - pad);
+            font.draw(batch, sprites.set(snapshot.rowCount, " bird sprites"), 10, 502 - (lineHeight + pad) * 2);
+            font.draw(batch, redraws.set(panel.getRedraws(), " panel redraws"), 10, 502 - (lineHeight + pad) * 3);
+            if (drawMetrics) {
+                if (metricsGeneration != snapshot.metrics.generation) {
+                    metricsGeneration = snapshot.metrics.generation;
+                    metrics.setText(font, formatMetrics(snapshot.metrics));
+                }
+                font.draw(batch, metrics, 10, 502 - (lineHeight + pad) * 4);
+            }
         }
 
         batch.end();
 
-        if (Gdx.input.isKeyJustPressed(Input.Keys.B)) iterationsPerTick = 1;
+        if (Gdx.input.isKeyJustPressed(Input.Keys.B)) {
+            iterationsPerTick = 1;
+            maxThroughput = false;
+            simulation.setFastForward(false);
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.T)) maxThroughput = !maxThroughput;
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F)) simulation.setFastForward(!snapshot.fastForward);
 
         if (Gdx.input.isKeyJustPressed(Input.Keys.M) && iterationsPerTick < 32) iterationsPerTick *= 2;
         if (Gdx.input.isKeyJustPressed(Input.Keys.N) && iterationsPerTick > 1) iterationsPerTick /= 2;
 
+        // The population is saved in the background, so neither thread waits for the disk
+        CheckpointWriter checkpoints = simulation.getCheckpoints();
         if (Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT) && Gdx.input.isKeyJustPressed(Input.Keys.S))
-            networks[first].save(generation);
+            simulation.save();
+        for (String message = simulation.pollMessage(); message != null; message = simulation.pollMessage())
+            showStatus(message);
+        if (checkpoints.getWritten() != savedCheckpoints) {
+            savedCheckpoints = checkpoints.getWritten();
+            showStatus("Population saved");
+        }
+        if (checkpoints.getError() != checkpointError) {
+            checkpointError = checkpoints.getError();
+            if (checkpointError != null) showStatus("Could not save: " + checkpointError.getLocalizedMessage());
+        }
         if (Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT) && Gdx.input.isKeyJustPressed(Input.Keys.A)) {
-            NeuralNet network = new NeuralNet();
-            int loaded = network.load();
-            if (loaded != -1) {
-                for (int i = 0; i < networks.length; i++)
-                    if (i == 0) networks[i] = network;
-                    else networks[i] = new NeuralNet(network, .3f);
-                bestScoreGen = 0;
-                bestScore = 0;
-                generation = loaded - 1;
-                reset();
+            try {
+                // Fall back to the network that is shipped with the game
+                File file = new File(CHECKPOINT);
+                Checkpoint checkpoint = file.exists() ? Checkpoint.read(file) : Checkpoint.read(ByteBuffer.wrap(Gdx.files.internal(CHECKPOINT).readBytes()));
+                simulation.restore(checkpoint);
+            } catch (IOException | GdxRuntimeException e) {
+                showStatus("Could not load: " + e.getLocalizedMessage());
             }
         }
 
         if (Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT) && Gdx.input.isKeyJustPressed(Input.Keys.R)) {
-            for (int i = 0; i < networks.length; i++) networks[i] = new NeuralNet();
-            bestScoreGen = 0;
-            bestScore = 0;
-            generation = 0;
-            reset();
+            simulation.restart(MathUtils.random.nextLong());
         }
 
         if (Gdx.input.isKeyJustPressed(Input.Keys.H) || Gdx.input.isKeyJustPressed(Input.Keys.F1)) drawHelp = !drawHelp;
-        if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) drawDebug = !drawDebug;
+        // F3 shows the counters, then the metrics of the last generation as well
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) {
+            drawMetrics = drawDebug && !drawMetrics;
+            drawDebug = drawMetrics || !drawDebug;
+        }
 
         if (Gdx.input.isKeyJustPressed(Input.Keys.SPACE)) paused = !paused;
+
+        simulation.setPaused(paused);
+        simulation.setMaxThroughput(maxThroughput);
+        simulation.setIterationsPerTick(iterationsPerTick);
+        simulation.getMetrics().frame(System.nanoTime() - frameStart);
     }
 
-    private void color(ShapeRenderer shape, float val) {
-        shape.setColor(val > 0 ? Color.GREEN : (val < 0 ? Color.FIREBRICK : Color.WHITE));
+    /**
+     * Lines of the expanded debug overlay, only formatted once per generation
+     */
+    private CharSequence formatMetrics(Metrics.Generation m) {
+        metricsText.setLength(0);
+        if (m.generation == 0) return metricsText.append("No generation finished yet");
+        metricsText.append(m.generation).append(". Gen: ").append(m.ticks).append(" ticks, ")
+                .append(Math.round(m.ticksPerSecond)).append(" ticks/s\n")
+                .append(String.format("forward %.1f ns, collision %.1f ns per bird\n", m.forwardNanos, m.collisionNanos))
+                .append(String.format("breed %.2f ms, render %.2f ms\n", m.breedMillis, m.renderMillis))
+                .append(String.format("GC %d / %d ms, %.1f KB/s\n", m.gcCount, m.gcMillis, m.allocationRate / 1024))
+                .append(String.format("fitness %d best, %.0f mean, %.0f median\n", m.bestFitness, m.meanFitness, m.medianFitness))
+                .append(m.survivors).append(" survivors, half dead after ").append(m.halfLife).append(" ticks");
+        return metricsText;
     }
 
-    private float size(float val, float maxVal, float minSize, float maxSize) {
-        if (Math.abs(val) > maxVal) return maxSize;
-        float perc = Math.abs(val) / maxVal;
-        return minSize + (maxSize - minSize) * perc;
+    private void showStatus(String text) {
+        status.setText(font, text);
+        statusTime = 3;
+    }
+
+    /**
+     * Draws a text centered around <tt>x</tt>
+     */
+    private void draw(GlyphLayout layout, float x, float y) {
+        font.draw(batch, layout, x - layout.width / 2, y);
     }
 
     @Override
@@ -464,11 +394,42 @@ public class NeuralFlappy extends ApplicationAdapter {
     @Override
     public void dispose() {
         font.dispose();
-        backgroundTexture.dispose();
-        for (Texture t : birdTexture) t.dispose();
-        for (Texture t : birdTextureSelected) t.dispose();
-        pipeTexture.dispose();
+        atlas.dispose();
+        packer.dispose();
+        shapeTexture.dispose();
+        panel.dispose();
         batch.dispose();
-        shape.dispose();
+        try {
+            simulation.dispose();
+        } catch (IOException e) {
+            Gdx.app.error("NeuralFlappy", "The population could not be saved", e);
+        }
+    }
+
+    /**
+     * A number with a unit, it is only laid out again when the number changes
+     */
+    private static class Label {
+
+        private final BitmapFont font;
+        private final GlyphLayout layout = new GlyphLayout();
+        private final StringBuilder text = new StringBuilder();
+        private String unit;
+        private int value;
+
+        Label(BitmapFont font) {
+            this.font = font;
+        }
+
+        GlyphLayout set(int value, String unit) {
+            if (value != this.value || !unit.equals(this.unit) || text.length() == 0) {
+                this.value = value;
+                this.unit = unit;
+                text.setLength(0);
+                text.append(value).append(unit);
+                layout.setText(font, text);
+            }
+            return layout;
+        }
     }
 }
@@ -1,9 +1,5 @@
 package de.tomjanke.medt;
 
-import com.badlogic.gdx.Gdx;
-
-import javax.swing.*;
-import java.io.*;
 import java.util.Random;
 
 /**
@@ -12,88 +8,129 @@ import java.util.Random;
 class NeuralNet {
 
     /**
-     * <tt>Input Layer</tt>
+     * Layout of this network
      */
-    private float[] inputLayer;
+    private final Topology topology;
 
     /**
-     * <tt>Input Layer</tt> <> <tt>Hidden Layer</tt>>
+     * All weights, layer by layer, see {@link Topology}
      */
-    private float[] weightLayer1;
+    private final float[] weights;
 
     /**
-     * <tt>Hidden Layer</tt>
+     * All neurons, starting with the <tt>Input Layer</tt> and ending with the <tt>Output Layer</tt>
      */
-    private float[] hiddenLayer;
+    private final float[] neurons;
 
     /**
-     * <tt>Hidden Layer</tt> <> <tt>Output Layer</tt>
+     * Current <tt>Fitness</tt> of this network
      */
-    private float[] weightLayer2;
+    private int fitness;
 
     /**
-     * <tt>Output Layer</tt>
+     * A network of the original 4-5-1 layout with totally random weights, like before there were topologies
      */
-    private float outputLayer;
+    NeuralNet() {
+        this(Topology.DEFAULT, new Random());
+    }
 
-    /**
-     * Current <tt>Fitness</tt> of this network
-     */
-    private int fitness;
+    NeuralNet(Topology topology) {
+        // All weights stay zero until they are loaded
+        this.topology = topology;
+        weights = new float[topology.getWeightCount()];
+        neurons = new float[topology.getNeuronCount()];
+    }
 
-    {
-        // there are 4 Inputs
-        final int input = 4;
-        // there are 5 Hiddens
-        final int hidden = 5;
+    NeuralNet(Topology topology, Random random) {
+        this(topology);
+        randomize(random);
+    }
 
-        // Initialize the layers
-        inputLayer = new float[input];
-        hiddenLayer = new float[hidden];
-        outputLayer = 0;
+    NeuralNet(NeuralNet parent) {
+        this(parent.topology);
+        copy(parent);
+    }
 
-        // Initialize the weights
-        weightLayer1 = new float[input * hidden];
-        weightLayer2 = new float[hidden];
+    NeuralNet(NeuralNet parent, float mutation, Random random) {
+        this(parent.topology);
+        inherit(parent, mutation, random);
     }
 
-    NeuralNet() {
-        // Calculate the first weights totally random
-        Random random = new Random();
-        for (int i = 0; i < weightLayer1.length; i++)
-            weightLayer1[i] = random.nextFloat() * 2 - 1f;
-        for (int i = 0; i < weightLayer2.length; i++)
-            weightLayer2[i] = random.nextFloat() * 2 - 1f;
+    /**
+     * Replaces the weights of <tt>this</tt> network with totally random weights
+     *
+     * @param random Source of the weights
+     */
+    void randomize(Random random) {
+        for (int i = 0; i < weights.length; i++)
+            weights[i] = random.nextFloat() * 2 - 1f;
+    }
+
+    /**
+     * Replaces the weights of <tt>this</tt> network with the weights of another network
+     *
+     * @param parent The network to copy the weights from
+     */
+    void copy(NeuralNet parent) {
+        System.arraycopy(parent.weights, 0, weights, 0, weights.length);
     }
 
-    NeuralNet(NeuralNet parent, float mutation) {
+    /**
+     * Replaces the weights of <tt>this</tt> network with mutated weights of another network,
+     * so networks can be reused instead of allocating new ones every generation
+     *
+     * @param parent   The network to copy the weights from
+     * @param mutation Maximum change of every weight
+     * @param random   Source of the mutations
+     */
+    void inherit(NeuralNet parent, float mutation, Random random) {
         // Get the base from another neural network and
-        System.arraycopy(parent.getWeightLayer1(), 0, weightLayer1, 0, weightLayer1.length);
-        System.arraycopy(parent.getWeightLayer2(), 0, weightLayer2, 0, weightLayer2.length);
+        System.arraycopy(parent.weights, 0, weights, 0, weights.length);
         // Mutate the weights
-        Random random = new Random();
-        for (int i = 0; i < weightLayer1.length; i++)
-            weightLayer1[i] += random.nextFloat() * mutation * 2 - mutation;
-        for (int i = 0; i < weightLayer2.length; i++)
-            weightLayer2[i] += random.nextFloat() * mutation * 2 - mutation;
+        mutate(mutation, random);
+    }
+
+    /**
+     * Replaces the weights of <tt>this</tt> network with a mutated crossover of two other networks
+     *
+     * @param a         The first parent
+     * @param b         The second parent
+     * @param crossover How the weights of the parents are combined
+     * @param mutation  Maximum change of every weight
+     * @param random    Source of the crossover and the mutations
+     */
+    void cross(NeuralNet a, NeuralNet b, Crossover crossover, float mutation, Random random) {
+        crossover.apply(a.weights, b.weights, weights, random);
+        mutate(mutation, random);
+    }
+
+    /**
+     * Changes every weight by a random amount
+     *
+     * @param mutation Maximum change of every weight
+     * @param random   Source of the mutations
+     */
+    private void mutate(float mutation, Random random) {
+        for (int i = 0; i < weights.length; i++)
+            weights[i] += random.nextFloat() * mutation * 2 - mutation;
     }
 
     /**
      * Activates the neural network with the given inputs and returns the output value
      *
      * @param input <tt>Input-Layer</tt>
-     * @return Result <tt>Output-Layer</tt>
-     * @throws IllegalArgumentException If the <tt>input.length</tt> and <tt>inputLayer.length</tt> do not match
+     * @return Result, the first neuron of the <tt>Output-Layer</tt>
+     * @throws IllegalArgumentException If the <tt>input.length</tt> and the size of the <tt>Input-Layer</tt> do not match
      */
     float activate(float[] input) {
-        if (inputLayer.length != input.length) throw new IllegalArgumentException("input.length and inputLayer.length do not match");
+        if (topology.getInputSize() != input.length) throw new IllegalArgumentException("input.length and the input layer size do not match");
 
-        System.arraycopy(input, 0, inputLayer, 0, inputLayer.length);
+        System.arraycopy(input, 0, neurons, 0, input.length);
 
         // Calculate the output
         process();
 
-        return outputLayer;
+        return neurons[topology.getNeuronOffset(topology.getLayerCount() - 1)];
     }
 
     /**
@@ -103,56 +140,54 @@ class NeuralNet {
      * @return <tt>this</tt> network with modified weights
      */
     NeuralNet breed(NeuralNet net) {
-        // Average Weight-Layer 1
-        for (int i = 0; i < weightLayer1.length; i++)
-            weightLayer1[i] = (weightLayer1[i] + net.getWeightLayer1()[i]) / 2;
-
-        // Average Weight-Layer 2
-        for (int i = 0; i < weightLayer2.length; i++)
-            weightLayer2[i] = (weightLayer2[i] + net.getWeightLayer2()[i]) / 2;
+        for (int i = 0; i < weights.length; i++)
+            weights[i] = (weights[i] + net.weights[i]) / 2;
 
         return this;
     }
 
-    float[] getInputLayer() {
-        return inputLayer;
-    }
-
-    float[] getHiddenLayer() {
-        return hiddenLayer;
+    Topology getTopology() {
+        return topology;
     }
 
-    float getOutputLayer() {
-        return outputLayer;
+    float[] getWeights() {
+        return weights;
     }
 
-    float[] getWeightLayer1() {
-        return weightLayer1;
+    /**
+     * @return The weight from neuron <tt>from</tt> of <tt>layer</tt> to neuron <tt>to</tt> of the next layer
+     */
+    float getWeight(int layer, int from, int to) {
+        return weights[topology.getWeightOffset(layer) + to * topology.getSize(layer) + from];
     }
 
-    float[] getWeightLayer2() {
-        return weightLayer2;
+    /**
+     * @return The value of a neuron after the last activation
+     */
+    float getNeuron(int layer, int index) {
+        return neurons[topology.getNeuronOffset(layer) + index];
     }
 
     /**
      * Calculates the output
      */
     private void process() {
-        // Hidden-Layer
-        for (int hidden = 0; hidden < hiddenLayer.length; hidden++)
-            hiddenLayer[hidden] = 0;
-
-        // Calculate Hidden-Layer
-        for (int hidden = 0; hidden < hiddenLayer.length; hidden++)
-            for (int input = 0; input < inputLayer.length; input++)
-                hiddenLayer[hidden] += inputLayer[input] * weightLayer1[hidden * inputLayer.length + input];
-
-        // Output-Layer
-        outputLayer = 0;
-
-        // Calculate Output-Layer
-        for (int hidden = 0; hidden < hiddenLayer.length; hidden++)
-            outputLayer += hiddenLayer[hidden] * weightLayer2[hidden];
+        int weight = 0;
+        for (int layer = 1; layer < topology.getLayerCount(); layer++) {
+            int previous = topology.getNeuronOffset(layer - 1),
+                    current = topology.getNeuronOffset(layer),
+                    inputs = topology.getSize(layer - 1);
+
+            // Calculate the layer from the previous one
+            for (int neuron = 0; neuron < topology.getSize(layer); neuron++) {
+                float sum = 0;
+                for (int input = 0; input < inputs; input++)
+                    sum += neurons[previous + input] * weights[weight++];
+                neurons[current + neuron] = sum;
+            }
+
+            topology.getActivation(layer).apply(neurons, current, current + topology.getSize(layer));
+        }
     }
 
     void resetFitness() {
@@ -163,49 +198,12 @@ class NeuralNet {
         return fitness;
     }
 
-    void addFitness() {
-        fitness++;
-    }
-
-    /**
-     * Saves the network to <tt>network.dat</tt>
-     *
-     * @param generation Current generation
-     */
-    void save(int generation) {
-        File file = new File("network.dat");
-        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)))) {
-            out.write(String.valueOf(generation) + "\n");
-            for (float v : weightLayer1)
-                out.write(String.valueOf(v) + "\n");
-            for (float v : weightLayer2)
-                out.write(String.valueOf(v) + "\n");
-            out.flush();
-            out.close();
-            JOptionPane.showMessageDialog(null, "The Neural Network was saved!", "Success", JOptionPane.INFORMATION_MESSAGE);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "The Neural Network could not be saved:\n" + e.getLocalizedMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+    void setFitness(int fitness) {
+        this.fitness = fitness;
     }
 
-    /**
-     * Loads a neural network from <tt>network.dat</tt> or an internal file
-     *
-     * @return Generation of the loaded network or -1 on error
-     */
-    int load() {
-        File file = new File("network.dat");
-        try (BufferedReader in = file.exists() ? new BufferedReader(new InputStreamReader(new FileInputStream(file))) : Gdx.files.internal("network.dat").reader(1024)) {
-            int generation = Integer.parseInt(in.readLine());
-            for (int i = 0; i < weightLayer1.length; i++)
-                weightLayer1[i] = Float.valueOf(in.readLine().trim());
-            for (int i = 0; i < weightLayer2.length; i++)
-                weightLayer2[i] = Float.valueOf(in.readLine().trim());
-            return generation;
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "The Neural Network could not be loaded:\n" + e.getLocalizedMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-        return -1;
+    void addFitness() {
+        fitness++;
     }
 
 }
@@ -0,0 +1,134 @@
+package de.tomjanke.medt;
+
+/**
+ * Novelty search: rewards birds for flying differently from the birds before them, which helps on fitness plateaus.
+ * <p>
+ * The behavior of a bird is its height relative to the next gap, sampled every {@link #INTERVAL} ticks,
+ * or {@link #DEAD} once it died. The novelty of a bird is the mean distance to the nearest behaviors of the current
+ * population and of an archive that grows by the most novel birds of every generation.
+ * <p>
+ * The archive is a series of {@link KdTree}s whose sizes are powers of two batches, merged like the digits of a
+ * binary counter. Adding a batch costs amortized <tt>O(log n)</tt> rebuilds per behavior and a query visits
+ * <tt>O(log n)</tt> trees, so lookups stay sub-linear while the archive grows to millions of behaviors.
+ */
+class Novelty {
+
+    /**
+     * Number of samples of a behavior and ticks between two samples
+     */
+    static final int SAMPLES = 16,
+            INTERVAL = 30;
+
+    /**
+     * Sample of a bird that already died, below any height a living bird can have relative to a gap
+     */
+    static final float DEAD = -400;
+
+    private final int birdCount,
+            archiveRate;
+    private final float weight;
+
+    /**
+     * Behavior of every bird of the current generation
+     */
+    private final float[] behaviors;
+    private final float[] novelty;
+
+    private final KdTree population = new KdTree(SAMPLES);
+    private final KdTree.Neighbors neighbors;
+
+    /**
+     * Level <tt>i</tt> holds <tt>2^i</tt> batches or is <tt>null</tt>
+     */
+    private final KdTree[] archive = new KdTree[32];
+    private int archiveSize;
+
+    /**
+     * @param birdCount   Number of networks
+     * @param neighbors   Number of nearest behaviors the novelty is measured to
+     * @param archiveRate Number of the most novel behaviors archived per generation
+     * @param weight      Share of the novelty in the fitness the networks are bred by
+     */
+    Novelty(int birdCount, int neighbors, int archiveRate, float weight) {
+        this.birdCount = birdCount;
+        this.archiveRate = Math.min(archiveRate, birdCount);
+        this.weight = weight;
+        behaviors = new float[birdCount * SAMPLES];
+        novelty = new float[birdCount];
+        this.neighbors = new KdTree.Neighbors(Math.max(1, neighbors));
+    }
+
+    /**
+     * Records a sample of every bird
+     *
+     * @param sample Index of the sample
+     * @param birds  Heights of the birds, the first {@link #birdCount} are the networks on the first course
+     * @param dead   Whether the birds are dead
+     * @param gap    Height of the next gap on the first course
+     */
+    void sample(int sample, float[] birds, boolean[] dead, float gap) {
+        for (int i = 0; i < birdCount; i++)
+            behaviors[i * SAMPLES + sample] = dead[i] ? DEAD : birds[i] - gap;
+    }
+
+    /**
+     * Records the samples a generation that ended after <tt>ticks</tt> did not reach anymore
+     */
+    void finish(int ticks, float[] birds, boolean[] dead, float gap) {
+        for (int sample = Math.min(SAMPLES, ticks / INTERVAL); sample < SAMPLES; sample++)
+            sample(sample, birds, dead, gap);
+    }
+
+    /**
+     * Mixes the novelty into the fitness of every network and archives the most novel behaviors
+     */
+    void evaluate(Population networks) {
+        population.build(behaviors, birdCount);
+        for (int i = 0; i < birdCount; i++) {
+            neighbors.clear();
+            population.nearest(behaviors, i * SAMPLES, neighbors, i);
+            for (KdTree level : archive)
+                if (level != null) level.nearest(behaviors, i * SAMPLES, neighbors, -1);
+            novelty[i] = neighbors.mean();
+            networks.setFitness(i, Math.round((1 - weight) * networks.getFitness(i) + weight * novelty[i]));
+        }
+        archive();
+    }
+
+    /**
+     * Adds the most novel behaviors of the generation as a new batch and merges the levels of equal size
+     */
+    private void archive() {
+        if (archiveRate <= 0) return;
+        float[] batch = new float[archiveRate * SAMPLES];
+        for (int n = 0; n < archiveRate; n++) {
+            int best = 0;
+            for (int i = 1; i < birdCount; i++)
+                if (novelty[i] > novelty[best]) best = i;
+            System.arraycopy(behaviors, best * SAMPLES, batch, n * SAMPLES, SAMPLES);
+            novelty[best] = -1;
+        }
+        archiveSize += archiveRate;
+
+        KdTree carry = new KdTree(SAMPLES);
+        carry.build(batch, archiveRate);
+        int level = 0;
+        while (archive[level] != null) {
+            KdTree other = archive[level];
+            archive[level++] = null;
+            float[] merged = new float[(carry.getCount() + other.getCount()) * SAMPLES];
+            System.arraycopy(other.getPoints(), 0, merged, 0, other.getCount() * SAMPLES);
+            System.arraycopy(carry.getPoints(), 0, merged, other.getCount() * SAMPLES, carry.getCount() * SAMPLES);
+            carry = new KdTree(SAMPLES);
+            carry.build(merged, merged.length / SAMPLES);
+        }
+        archive[level] = carry;
+    }
+
+    /**
+     * @return Number of archived behaviors
+     */
+    int getArchiveSize() {
+        return archiveSize;
+    }
+}
@@ -0,0 +1,80 @@
+package de.tomjanke.medt;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A population whose weights and fitness live in direct buffers outside of the Java heap,
+ * <tt>[network][weight]</tt> and <tt>[network]</tt>.
+ * <p>
+ * A million networks are then two buffers instead of millions of small objects, so neither the heap size nor the
+ * time the garbage collector spends marking grows with the population. Networks are only materialized in a few
+ * cursors while they are bred, see {@link Population}. The buffers are freed when the population is collected.
+ * <p>
+ * A direct buffer is addressed by int, so the weights are split into slabs of at most {@link #SLAB_BYTES} that hold
+ * whole networks. They are only read and written with absolute indices, so threads that breed different networks
+ * at the same time do not disturb each other.
+ */
+class OffHeapPopulation extends Population {
+
+    /**
+     * Largest direct buffer that is allocated at once
+     */
+    static final int SLAB_BYTES = 1 << 30;
+
+    private final FloatBuffer[] slabs;
+    private final IntBuffer fitness;
+    private final int weightCount,
+            networksPerSlab;
+
+    /**
+     * @throws IllegalArgumentException If a single network or the fitness of all networks does not fit into a slab
+     */
+    OffHeapPopulation(Topology topology, int size) {
+        super(topology, size);
+        weightCount = topology.getWeightCount();
+        if ((long) weightCount * Float.BYTES > SLAB_BYTES)
+            throw new IllegalArgumentException("A network of " + weightCount + " weights is too large to be stored off-heap");
+        if ((long) size * Integer.BYTES > SLAB_BYTES)
+            throw new IllegalArgumentException(size + " networks are too many to be stored off-heap");
+        networksPerSlab = SLAB_BYTES / (weightCount * Float.BYTES);
+        slabs = new FloatBuffer[(int) (((long) size + networksPerSlab - 1) / networksPerSlab)];
+        for (int slab = 0; slab < slabs.length; slab++) {
+            int networks = Math.min(networksPerSlab, size - slab * networksPerSlab);
+            slabs[slab] = ByteBuffer.allocateDirect(networks * weightCount * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        fitness = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    @Override
+    NeuralNet get(int network, NeuralNet cursor) {
+        FloatBuffer slab = slabs[network / networksPerSlab];
+        int offset = network % networksPerSlab * weightCount;
+        float[] weights = cursor.getWeights();
+        for (int i = 0; i < weights.length; i++)
+            weights[i] = slab.get(offset + i);
+        cursor.setFitness(fitness.get(network));
+        return cursor;
+    }
+
+    @Override
+    void set(int network, NeuralNet weights) {
+        FloatBuffer slab = slabs[network / networksPerSlab];
+        int offset = network % networksPerSlab * weightCount;
+        float[] values = weights.getWeights();
+        for (int i = 0; i < values.length; i++)
+            slab.put(offset + i, values[i]);
+    }
+
+    @Override
+    int getFitness(int network) {
+        return fitness.get(network);
+    }
+
+    @Override
+    void setFitness(int network, int fitness) {
+        this.fitness.put(network, fitness);
+    }
+}
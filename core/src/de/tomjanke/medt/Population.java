@@ -0,0 +1,70 @@
+package de.tomjanke.medt;
+
+import java.util.Random;
+
+/**
+ * The weights and the fitness of all networks of a population, addressed by index.
+ * <p>
+ * {@link #get(int, NeuralNet)} is a flyweight accessor: a population on the heap returns its own network,
+ * an off-heap population loads the network into the given cursor. Changes are written back with
+ * {@link #set(int, NeuralNet)}, which does nothing for the network on the heap at that index,
+ * so the breeding code is the same for both kinds.
+ */
+abstract class Population {
+
+    final Topology topology;
+    final int size;
+
+    Population(Topology topology, int size) {
+        this.topology = topology;
+        this.size = size;
+    }
+
+    /**
+     * @param offHeap Whether the weights and the fitness are stored outside of the Java heap, see {@link OffHeapPopulation}
+     * @return A population of networks with zero weights
+     */
+    static Population create(Topology topology, int size, boolean offHeap) {
+        return offHeap ? new OffHeapPopulation(topology, size) : new HeapPopulation(topology, size);
+    }
+
+    /**
+     * @param network Index of the network
+     * @param cursor  Network of the same topology to load an off-heap network into
+     * @return The network, valid until the cursor is loaded again
+     */
+    abstract NeuralNet get(int network, NeuralNet cursor);
+
+    /**
+     * Replaces the weights at an index, the fitness stays unchanged
+     */
+    abstract void set(int network, NeuralNet weights);
+
+    abstract int getFitness(int network);
+
+    abstract void setFitness(int network, int fitness);
+
+    void resetFitness() {
+        for (int i = 0; i < size; i++)
+            setFitness(i, 0);
+    }
+
+    /**
+     * Replaces every network with random weights, in the order of the indices
+     */
+    void randomize(NeuralNet cursor, Random random) {
+        for (int i = 0; i < size; i++) {
+            NeuralNet network = get(i, cursor);
+            network.randomize(random);
+            set(i, network);
+        }
+    }
+
+    Topology getTopology() {
+        return topology;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,364 @@
+package de.tomjanke.medt;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Evaluates the networks of a whole population in one batched pass.
+ * <p>
+ * All weights and neurons are packed into contiguous matrices where the bird index runs fastest,
+ * so every inner loop walks linearly over memory and can be vectorized by the JIT.
+ * With {@link Precision#FLOAT} the summation order per bird is the same as in {@link NeuralNet#activate(float[])},
+ * so both produce identical results. The quantized precisions trade a small drift for less weight memory,
+ * see {@link Drift}.
+ * <p>
+ * Birds are addressed by slot, so the caller can keep its living birds in the front slots and evaluate only those.
+ * <p>
+ * For an off-heap population the packed weights are kept outside of the heap as well, in slabs of whole rows
+ * <tt>[weight]</tt>. The sums are added up in the same order, so the results are the same.
+ */
+class PopulationEvaluator {
+
+    private static final int ROUNDING_OFFSET = 1 << 15;
+
+    private final int count;
+
+    private final Topology topology;
+
+    private final Precision precision;
+
+    /**
+     * Inner loop of the float path, <tt>null</tt> for the plain loop
+     */
+    private final ForwardKernel kernel;
+
+    /**
+     * All neurons of every bird, <tt>[neuron][bird]</tt>
+     */
+    private final float[] neurons;
+
+    /**
+     * All weights of every bird, <tt>[weight][bird]</tt>, only one of them is used depending on the precision
+     */
+    private final float[] weights;
+    private final short[] weights16;
+    private final byte[] weights8;
+
+    /**
+     * The weights of every bird outside of the heap instead of the arrays above, <tt>[weight][bird]</tt> in the
+     * format of the precision, and the number of rows of weights in every slab and the bytes of a single weight
+     */
+    private final ByteBuffer[] slabs;
+    private final int rowsPerSlab,
+            width;
+
+    /**
+     * Scale of the quantized weights of every layer, <tt>[layer - 1][bird]</tt>
+     */
+    private final float[] weightScales;
+
+    /**
+     * The quantized neurons of the previous layer, <tt>[neuron][bird]</tt>, and their scale and inverse scale per bird.
+     * They are only a small working set, so they stay wide and only the streamed weights are narrow.
+     */
+    private final int[] quantized;
+    private final float[] inputScales,
+            inputInverses;
+
+    /**
+     * Integer accumulators of the current neuron, one per bird
+     */
+    private final int[] sums;
+    private final long[] sums16;
+
+    /**
+     * Index of the first output neuron in {@link #neurons}
+     */
+    private final int output;
+
+    PopulationEvaluator(int count, Topology topology) {
+        this(count, topology, Precision.FLOAT);
+    }
+
+    PopulationEvaluator(int count, Topology topology, Precision precision) {
+        this(count, topology, precision, null);
+    }
+
+    PopulationEvaluator(int count, Topology topology, Precision precision, ForwardKernel kernel) {
+        this(count, topology, precision, kernel, false);
+    }
+
+    /**
+     * @param offHeap Whether the packed weights are stored outside of the heap, a {@link ForwardKernel} needs them on it
+     * @throws IllegalArgumentException If a row of weights does not fit into a slab, or a kernel is used off-heap
+     */
+    PopulationEvaluator(int count, Topology topology, Precision precision, ForwardKernel kernel, boolean offHeap) {
+        this.count = count;
+        this.topology = topology;
+        this.precision = precision;
+        this.kernel = precision == Precision.FLOAT ? kernel : null;
+        if (offHeap && this.kernel != null)
+            throw new IllegalArgumentException("The forward kernel needs the weights on the heap");
+
+        neurons = new float[topology.getNeuronCount() * count];
+        output = topology.getNeuronOffset(topology.getLayerCount() - 1) * count;
+
+        int weightCount = topology.getWeightCount() * count,
+                maxInputs = 0;
+        for (int layer = 0; layer < topology.getLayerCount() - 1; layer++)
+            maxInputs = Math.max(maxInputs, topology.getSize(layer));
+        width = precision == Precision.FLOAT ? Float.BYTES : precision == Precision.INT16 ? Short.BYTES : Byte.BYTES;
+        if (offHeap) {
+            if ((long) count * width > OffHeapPopulation.SLAB_BYTES)
+                throw new IllegalArgumentException("The weights of " + count + " birds are too large to be stored off-heap");
+            int rows = topology.getWeightCount();
+            rowsPerSlab = OffHeapPopulation.SLAB_BYTES / (count * width);
+            slabs = new ByteBuffer[(rows + rowsPerSlab - 1) / rowsPerSlab];
+            for (int slab = 0; slab < slabs.length; slab++)
+                slabs[slab] = ByteBuffer.allocateDirect(Math.min(rowsPerSlab, rows - slab * rowsPerSlab) * count * width)
+                        .order(ByteOrder.nativeOrder());
+        } else {
+            rowsPerSlab = 0;
+            slabs = null;
+        }
+        weights = precision == Precision.FLOAT && !offHeap ? new float[weightCount] : null;
+        weights16 = precision == Precision.INT16 && !offHeap ? new short[weightCount] : null;
+        weights8 = precision == Precision.INT8 && !offHeap ? new byte[weightCount] : null;
+        quantized = precision != Precision.FLOAT ? new int[maxInputs * count] : null;
+        sums16 = precision == Precision.INT16 ? new long[count] : null;
+        sums = precision == Precision.INT8 ? new int[count] : null;
+        boolean quantized = precision != Precision.FLOAT;
+        weightScales = quantized ? new float[(topology.getLayerCount() - 1) * count] : null;
+        inputScales = quantized ? new float[count] : null;
+        inputInverses = quantized ? new float[count] : null;
+    }
+
+    /**
+     * Copies the weights of a single network into the packed matrices
+     *
+     * @param bird    Slot of the bird
+     * @param network Network of the bird
+     */
+    void pack(int bird, NeuralNet network) {
+        float[] weight = network.getWeights();
+        if (precision == Precision.FLOAT) {
+            for (int i = 0; i < weight.length; i++)
+                if (slabs != null) slab(i).putFloat(offset(i, bird), weight[i]);
+                else weights[i * count + bird] = weight[i];
+            return;
+        }
+
+        // Every layer gets its own scale, so a few large weights in one layer do not flatten the others
+        for (int layer = 1; layer < topology.getLayerCount(); layer++) {
+            int from = topology.getWeightOffset(layer - 1),
+                    to = from + topology.getSize(layer - 1) * topology.getSize(layer);
+            float max = 0;
+            for (int i = from; i < to; i++)
+                max = Math.max(max, Math.abs(weight[i]));
+            float inverse = max > 0 ? precision.getMax() / max : 0;
+            weightScales[(layer - 1) * count + bird] = max > 0 ? max / precision.getMax() : 0;
+
+            for (int i = from; i < to; i++) {
+                int q = round(weight[i] * inverse);
+                if (slabs != null && precision == Precision.INT16) slab(i).putShort(offset(i, bird), (short) q);
+                else if (slabs != null) slab(i).put(offset(i, bird), (byte) q);
+                else if (precision == Precision.INT16) weights16[i * count + bird] = (short) q;
+                else weights8[i * count + bird] = (byte) q;
+            }
+        }
+    }
+
+    /**
+     * Exchanges the packed weights of two slots, e.g. to move a dead bird behind the living ones
+     */
+    void swap(int a, int b) {
+        for (int i = 0; i < topology.getWeightCount(); i++) {
+            int wa = i * count + a,
+                    wb = i * count + b;
+            if (slabs != null) {
+                // The bytes of a weight are exchanged whatever their format
+                ByteBuffer slab = slab(i);
+                int oa = offset(i, a),
+                        ob = offset(i, b);
+                for (int k = 0; k < width; k++) {
+                    byte w = slab.get(oa + k);
+                    slab.put(oa + k, slab.get(ob + k));
+                    slab.put(ob + k, w);
+                }
+            } else if (precision == Precision.FLOAT) {
+                float w = weights[wa];
+                weights[wa] = weights[wb];
+                weights[wb] = w;
+            } else if (precision == Precision.INT16) {
+                short w = weights16[wa];
+                weights16[wa] = weights16[wb];
+                weights16[wb] = w;
+            } else {
+                byte w = weights8[wa];
+                weights8[wa] = weights8[wb];
+                weights8[wb] = w;
+            }
+        }
+        if (precision != Precision.FLOAT)
+            for (int layer = 1; layer < topology.getLayerCount(); layer++) {
+                int sa = (layer - 1) * count + a,
+                        sb = (layer - 1) * count + b;
+                float scale = weightScales[sa];
+                weightScales[sa] = weightScales[sb];
+                weightScales[sb] = scale;
+            }
+    }
+
+    /**
+     * @return The slab of a row of off-heap weights
+     */
+    private ByteBuffer slab(int row) {
+        return slabs[row / rowsPerSlab];
+    }
+
+    /**
+     * @return Position of the weight of a bird in the slab of its row
+     */
+    private int offset(int row, int bird) {
+        return (row % rowsPerSlab * count + bird) * width;
+    }
+
+    /**
+     * @return Whether the float path runs on a {@link ForwardKernel}
+     */
+    boolean isKernel() {
+        return kernel != null;
+    }
+
+    Precision getPrecision() {
+        return precision;
+    }
+
+    void setInput(int bird, int input, float value) {
+        neurons[input * count + bird] = value;
+    }
+
+    /**
+     * Copies the last inputs of a bird into <tt>out</tt>
+     */
+    void getInput(int bird, float[] out) {
+        for (int input = 0; input < out.length; input++)
+            out[input] = neurons[input * count + bird];
+    }
+
+    float getOutput(int bird) {
+        return neurons[output + bird];
+    }
+
+    /**
+     * Calculates the outputs of the birds <tt>from</tt> (inclusive) to <tt>to</tt> (exclusive)
+     */
+    void evaluate(int from, int to) {
+        int weight = 0;
+        for (int layer = 1; layer < topology.getLayerCount(); layer++) {
+            int previous = topology.getNeuronOffset(layer - 1),
+                    inputs = topology.getSize(layer - 1);
+            Activation activation = topology.getActivation(layer);
+
+            if (precision != Precision.FLOAT) quantize(previous, inputs, from, to);
+
+            for (int neuron = topology.getNeuronOffset(layer); neuron < topology.getNeuronOffset(layer + 1); neuron++) {
+                int n = neuron * count;
+                if (precision == Precision.INT8) evaluate8(n, layer, weight, inputs, from, to);
+                else if (precision == Precision.INT16) evaluate16(n, layer, weight, inputs, from, to);
+                else if (kernel != null) kernel.neuron(neurons, n, previous * count, weights, weight * count, inputs, count, from, to);
+                else {
+                    for (int bird = from; bird < to; bird++)
+                        neurons[n + bird] = 0;
+                    for (int input = 0; input < inputs; input++) {
+                        int i = (previous + input) * count,
+                                w = (weight + input) * count;
+                        if (slabs != null) {
+                            ByteBuffer slab = slab(weight + input);
+                            int o = offset(weight + input, 0);
+                            for (int bird = from; bird < to; bird++)
+                                neurons[n + bird] += neurons[i + bird] * slab.getFloat(o + bird * Float.BYTES);
+                        } else
+                            for (int bird = from; bird < to; bird++)
+                                neurons[n + bird] += neurons[i + bird] * weights[w + bird];
+                    }
+                }
+                weight += inputs;
+                activation.apply(neurons, n + from, n + to);
+            }
+        }
+    }
+
+    /**
+     * Quantizes the neurons of a layer with one scale per bird, so the largest one maps to the largest integer
+     */
+    private void quantize(int previous, int inputs, int from, int to) {
+        for (int bird = from; bird < to; bird++)
+            inputScales[bird] = 0;
+        for (int input = 0; input < inputs; input++) {
+            int i = (previous + input) * count;
+            for (int bird = from; bird < to; bird++)
+                inputScales[bird] = Math.max(inputScales[bird], Math.abs(neurons[i + bird]));
+        }
+        for (int bird = from; bird < to; bird++) {
+            float max = inputScales[bird];
+            inputInverses[bird] = max > 0 ? precision.getMax() / max : 0;
+            inputScales[bird] = max / precision.getMax();
+        }
+
+        for (int input = 0; input < inputs; input++) {
+            int i = (previous + input) * count,
+                    q = input * count;
+            for (int bird = from; bird < to; bird++)
+                quantized[q + bird] = round(neurons[i + bird] * inputInverses[bird]);
+        }
+    }
+
+    private void evaluate8(int n, int layer, int weight, int inputs, int from, int to) {
+        for (int bird = from; bird < to; bird++)
+            sums[bird] = 0;
+        for (int input = 0; input < inputs; input++) {
+            int q = input * count,
+                    w = (weight + input) * count;
+            if (slabs != null) {
+                ByteBuffer slab = slab(weight + input);
+                int o = offset(weight + input, 0);
+                for (int bird = from; bird < to; bird++)
+                    sums[bird] += quantized[q + bird] * slab.get(o + bird);
+            } else
+                for (int bird = from; bird < to; bird++)
+                    sums[bird] += quantized[q + bird] * weights8[w + bird];
+        }
+        int s = (layer - 1) * count;
+        for (int bird = from; bird < to; bird++)
+            neurons[n + bird] = sums[bird] * inputScales[bird] * weightScales[s + bird];
+    }
+
+    private void evaluate16(int n, int layer, int weight, int inputs, int from, int to) {
+        for (int bird = from; bird < to; bird++)
+            sums16[bird] = 0;
+        for (int input = 0; input < inputs; input++) {
+            int q = input * count,
+                    w = (weight + input) * count;
+            if (slabs != null) {
+                ByteBuffer slab = slab(weight + input);
+                int o = offset(weight + input, 0);
+                for (int bird = from; bird < to; bird++)
+                    sums16[bird] += quantized[q + bird] * slab.getShort(o + bird * Short.BYTES);
+            } else
+                for (int bird = from; bird < to; bird++)
+                    sums16[bird] += quantized[q + bird] * weights16[w + bird];
+        }
+        int s = (layer - 1) * count;
+        for (int bird = from; bird < to; bird++)
+            neurons[n + bird] = sums16[bird] * inputScales[bird] * weightScales[s + bird];
+    }
+
+    /**
+     * Rounds a value of at most {@link Short#MAX_VALUE} to the nearest integer without a branch,
+     * the offset keeps the truncating cast on positive values
+     */
+    private static int round(float value) {
+        return (int) (value + (ROUNDING_OFFSET + .5f)) - ROUNDING_OFFSET;
+    }
+}
@@ -0,0 +1,39 @@
+package de.tomjanke.medt;
+
+/**
+ * Number format of the weights the {@link PopulationEvaluator} streams through every tick.
+ * <p>
+ * The quantized formats store every weight as a signed integer with one scale per bird and layer,
+ * and quantize the neurons of a layer per bird before the integer dot products.
+ * The networks themselves always keep their float weights for breeding and mutation.
+ */
+public enum Precision {
+
+    /**
+     * Plain float weights, identical to {@link NeuralNet#activate(float[])}
+     */
+    FLOAT(0),
+
+    /**
+     * 16 bit weights, half the weight memory
+     */
+    INT16(Short.MAX_VALUE),
+
+    /**
+     * 8 bit weights, a quarter of the weight memory
+     */
+    INT8(Byte.MAX_VALUE);
+
+    private final int max;
+
+    Precision(int max) {
+        this.max = max;
+    }
+
+    /**
+     * @return Largest quantized magnitude, <tt>0</tt> for {@link #FLOAT}
+     */
+    int getMax() {
+        return max;
+    }
+}
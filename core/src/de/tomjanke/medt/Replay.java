@@ -0,0 +1,277 @@
+package de.tomjanke.medt;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A compact record of a training run: the master seed and the elite of every generation.
+ * <p>
+ * Every generation is bred from the elite of the previous one with seeds derived from the master seed,
+ * so any generation can be replayed and a run can be resumed bit for bit without simulating it again.
+ * <p>
+ * Format (big-endian): magic <tt>NFRP</tt>, version, seed, bird count, the encoded {@link Topology}
+ * and the termination policies (max ticks, max score, stop when decided),
+ * followed by one record per generation: generation, score, fitness and the weights of the elite.
+ */
+public class Replay {
+
+    private static final int MAGIC = 0x4E465250;
+    private static final int VERSION = 1;
+
+    /**
+     * The elite that was bred at the end of a generation
+     */
+    public static class Record {
+        private final int generation,
+                score,
+                fitness;
+        private final NeuralNet elite;
+
+        private Record(int generation, int score, int fitness, NeuralNet elite) {
+            this.generation = generation;
+            this.score = score;
+            this.fitness = fitness;
+            this.elite = elite;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getFitness() {
+            return fitness;
+        }
+
+        NeuralNet getElite() {
+            return elite;
+        }
+    }
+
+    /**
+     * Appends a record to a replay file whenever a generation ended
+     */
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+
+        /**
+         * @param file       Replay file
+         * @param simulation Simulation to record
+         * @param append     Whether to continue an existing replay of the same run
+         * @throws IOException              If the file could not be opened or is a replay of another version
+         * @throws IllegalArgumentException If the simulation is quantized, replays are always simulated with float precision,
+         *                                  or it does not use the original breeding, a replay only records the elite
+         */
+        public Writer(File file, FlappySimulation simulation, boolean append) throws IOException {
+            if (simulation.getPrecision() != Precision.FLOAT)
+                throw new IllegalArgumentException("Only runs with float precision can be replayed");
+            if (simulation.getSelection() != Selection.LEGACY || simulation.isAdaptiveMutation() || simulation.getMutation() != .3f)
+                throw new IllegalArgumentException("Only runs with the legacy selection and a fixed mutation of 0.3 can be replayed");
+            if (simulation.isFixedCourse() || simulation.getCourses() > 1)
+                throw new IllegalArgumentException("Only runs on a new single course per generation can be replayed");
+            if (!simulation.isOriginalRules())
+                throw new IllegalArgumentException("Only runs with the original physics and breeding threshold can be replayed");
+            if (simulation.isNovelty())
+                throw new IllegalArgumentException("Runs with novelty search cannot be replayed, the archive is not recorded");
+            append = append && file.exists();
+            if (append) {
+                // Drop a truncated last record, e.g. after a crash
+                int recordSize = 12 + 4 * simulation.getTopology().getWeightCount();
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.seek(4);
+                    int version = raf.readInt(),
+                            headerSize = 32 + 4 * (simulation.getTopology().getLayerCount() + 3);
+                    if (version != VERSION) throw new IOException("Unsupported replay version " + version);
+                    raf.setLength(headerSize + (raf.length() - headerSize) / recordSize * recordSize);
+                }
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+            if (!append) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(simulation.getSeed());
+                out.writeInt(simulation.getBirdCount());
+                for (int v : simulation.getTopology().encode())
+                    out.writeInt(v);
+                out.writeInt(simulation.getMaxTicks());
+                out.writeInt(simulation.getMaxScore());
+                out.writeInt(simulation.isStopWhenDecided() ? 1 : 0);
+            }
+        }
+
+        /**
+         * Records the generation that just ended, must be called right after {@link FlappySimulation#step()} returned <tt>true</tt>
+         *
+         * @param simulation The recorded simulation
+         * @throws IOException If the record could not be written
+         */
+        public void record(FlappySimulation simulation) throws IOException {
+            out.writeInt(simulation.getGeneration() - 1);
+            out.writeInt(simulation.getLastScore());
+            out.writeInt(simulation.getLastFitness());
+            for (float v : simulation.getNetwork(0).getWeights())
+                out.writeFloat(v);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private final long seed;
+    private final int birdCount;
+    private final Topology topology;
+    private final int maxTicks,
+            maxScore;
+    private final boolean stopWhenDecided;
+    private final ArrayList<Record> records = new ArrayList<>();
+
+    private Replay(long seed, int birdCount, Topology topology, int maxTicks, int maxScore, boolean stopWhenDecided) {
+        this.seed = seed;
+        this.birdCount = birdCount;
+        this.topology = topology;
+        this.maxTicks = maxTicks;
+        this.maxScore = maxScore;
+        this.stopWhenDecided = stopWhenDecided;
+    }
+
+    /**
+     * Reads a replay file. A truncated last record, e.g. after a crash, is ignored.
+     *
+     * @param file Replay file
+     * @return The replay
+     * @throws IOException If the file could not be read or is no valid replay
+     */
+    public static Replay read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is no replay");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported replay version " + version);
+
+            long seed = in.readLong();
+            int birdCount = in.readInt();
+            Topology topology;
+            int layers = in.readInt();
+            if (layers < 2) throw new IOException("The replay contains an invalid topology");
+            int[] code = new int[layers + 3];
+            code[0] = layers;
+            for (int i = 1; i < code.length; i++)
+                code[i] = in.readInt();
+            try {
+                topology = Topology.decode(code);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("The replay contains an invalid topology", e);
+            }
+            Replay replay = new Replay(seed, birdCount, topology, in.readInt(), in.readInt(), in.readInt() != 0);
+
+            while (true) {
+                try {
+                    int generation = in.readInt(),
+                            score = in.readInt(),
+                            fitness = in.readInt();
+                    NeuralNet elite = new NeuralNet(topology);
+                    float[] weights = elite.getWeights();
+                    for (int i = 0; i < weights.length; i++)
+                        weights[i] = in.readFloat();
+                    replay.records.add(new Record(generation, score, fitness, elite));
+                } catch (EOFException e) {
+                    return replay;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a simulation that starts exactly like the given generation of the recorded run
+     *
+     * @param generation Generation to start, 1 or one after a recorded generation
+     * @param threads    Number of simulation threads
+     * @return The simulation
+     * @throws IllegalArgumentException If the previous generation was not recorded
+     */
+    public FlappySimulation start(int generation, int threads) {
+        FlappyConfiguration config = new FlappyConfiguration();
+        config.birdCount = birdCount;
+        config.seed = seed;
+        config.threads = threads;
+        config.topology = topology;
+        config.maxTicks = maxTicks;
+        config.maxScore = maxScore;
+        config.stopWhenDecided = stopWhenDecided;
+        FlappySimulation simulation = new FlappySimulation(config);
+        if (generation == 1) return simulation;
+
+        int bestScore = 0,
+                bestScoreGen = 0;
+        for (Record record : records) {
+            if (record.score > bestScore) {
+                bestScore = record.score;
+                bestScoreGen = record.generation;
+            }
+            if (record.generation == generation - 1) {
+                simulation.resume(record.elite, generation, bestScore, bestScoreGen);
+                return simulation;
+            }
+        }
+        simulation.dispose();
+        throw new IllegalArgumentException("Generation " + (generation - 1) + " was not recorded");
+    }
+
+    /**
+     * Creates a simulation that continues after the last recorded generation
+     *
+     * @param threads Number of simulation threads
+     * @return The simulation
+     */
+    public FlappySimulation resume(int threads) {
+        return start(records.isEmpty() ? 1 : records.get(records.size() - 1).generation + 1, threads);
+    }
+
+    /**
+     * Simulates a recorded generation again and compares the outcome with the record
+     *
+     * @param index   Index of the record
+     * @param threads Number of simulation threads
+     * @return <tt>true</tt> if score, fitness and the bred elite are identical
+     */
+    public boolean verify(int index, int threads) {
+        Record record = records.get(index);
+        FlappySimulation simulation = start(record.generation, threads);
+        boolean ended;
+        do {
+            ended = simulation.step();
+        } while (!ended);
+        simulation.dispose();
+
+        NeuralNet elite = simulation.getNetwork(0);
+        return simulation.getLastScore() == record.score
+                && simulation.getLastFitness() == record.fitness
+                && Arrays.equals(elite.getWeights(), record.elite.getWeights());
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getBirdCount() {
+        return birdCount;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public int getRecordCount() {
+        return records.size();
+    }
+
+    public Record getRecord(int index) {
+        return records.get(index);
+    }
+}
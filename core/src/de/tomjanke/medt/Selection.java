@@ -0,0 +1,102 @@
+package de.tomjanke.medt;
+
+import java.util.Random;
+
+/**
+ * How the parents of the next generation are picked.
+ * <p>
+ * Except for {@link #LEGACY} the birds are ranked by their fitness, the best ones are kept as elite and
+ * every other child is a crossover of two distinct parents, see {@link Crossover}.
+ */
+public enum Selection {
+
+    /**
+     * The original breeding: the best network is averaged with every network above 80% of its fitness,
+     * and the whole population becomes mutations of that single network
+     */
+    LEGACY,
+
+    /**
+     * The best of three randomly drawn birds
+     */
+    TOURNAMENT,
+
+    /**
+     * A bird with a probability proportional to its rank, the best has <tt>n</tt> shares and the worst one
+     */
+    RANK,
+
+    /**
+     * A bird with a probability proportional to its fitness, also known as roulette wheel selection
+     */
+    PROPORTIONAL;
+
+    /**
+     * Number of birds drawn for every {@link #TOURNAMENT}
+     */
+    static final int TOURNAMENT_SIZE = 3;
+
+    /**
+     * Picks a parent
+     *
+     * @param cumulative Sum of the fitness of the ranks <tt>0</tt> to <tt>i</tt> for every rank <tt>i</tt>, the fittest first
+     * @param random     Source of the choice
+     * @param excluded   Rank that is never picked, e.g. the first parent, or <tt>-1</tt>
+     * @return Rank of the parent
+     */
+    int select(long[] cumulative, Random random, int excluded) {
+        int count = cumulative.length;
+        // Without the excluded rank there is one bird less to choose from, the ones behind it move up by one
+        int candidates = excluded >= 0 ? count - 1 : count;
+        switch (this) {
+            case TOURNAMENT: {
+                // The lowest rank is the fittest bird
+                int rank = random.nextInt(candidates);
+                for (int i = 1; i < TOURNAMENT_SIZE; i++)
+                    rank = Math.min(rank, random.nextInt(candidates));
+                return skip(rank, excluded);
+            }
+            case RANK: {
+                // Counted from the worst bird the shares are 1, 2, ..., n, so the cumulative shares are triangular numbers
+                long total = (long) count * (count + 1) / 2;
+                long start = total,
+                        share = 0;
+                if (excluded >= 0) {
+                    long fromWorst = count - 1 - excluded;
+                    start = fromWorst * (fromWorst + 1) / 2;
+                    share = fromWorst + 1;
+                }
+                long r = (long) (random.nextDouble() * (total - share));
+                if (r >= start) r += share;
+                int fromWorst = (int) ((Math.sqrt(8.0 * r + 1) - 1) / 2);
+                return count - 1 - Math.min(fromWorst, count - 1);
+            }
+            case PROPORTIONAL: {
+                long start = excluded > 0 ? cumulative[excluded - 1] : 0,
+                        share = excluded >= 0 ? cumulative[excluded] - start : 0,
+                        total = cumulative[count - 1] - share;
+                if (total == 0) return skip(random.nextInt(candidates), excluded);
+                long r = (long) (random.nextDouble() * total);
+                if (excluded >= 0 && r >= start) r += share;
+                // First rank whose cumulative fitness is above r
+                int low = 0,
+                        high = count - 1;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (cumulative[middle] > r) high = middle;
+                    else low = middle + 1;
+                }
+                return low;
+            }
+            default:
+                return excluded == 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * @return The rank among all birds of a rank that was drawn without the excluded one
+     */
+    private static int skip(int rank, int excluded) {
+        return excluded >= 0 && rank >= excluded ? rank + 1 : rank;
+    }
+}
@@ -0,0 +1,231 @@
+package de.tomjanke.medt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link FlappySimulation} on its own thread, so the render thread never waits for it.
+ * <p>
+ * The simulation is paced to {@link FlappySimulation#TICK} times the speed, or runs as fast as it can.
+ * After every frame worth of steps it publishes a {@link Snapshot} through a {@link TripleBuffer}.
+ * The simulation is only touched by this thread, the render thread changes it through {@link #execute(Runnable)}.
+ */
+class SimulationThread {
+
+    private static final long FRAME = (long) (FlappySimulation.TICK * 1e9);
+
+    private final FlappySimulation simulation;
+    private final CheckpointWriter checkpoints;
+    private final Metrics metrics;
+    private MetricsWriter metricsWriter;
+    private final TripleBuffer<Snapshot> snapshots;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> messages = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    private volatile boolean running = true,
+            paused = true,
+            maxThroughput,
+            fastForward;
+    private volatile int iterationsPerTick = 1;
+
+    /**
+     * Frames to wait before a new generation starts, so it can be seen
+     */
+    private int countdown;
+
+    private long tickCounter,
+            tickCounterStart;
+    private int ticksPerSecond;
+
+    /**
+     * @param config                Settings of the simulation
+     * @param checkpoint            File the population is saved to
+     * @param checkpointGenerations Number of generations between two automatic checkpoints, 0 to disable
+     * @param checkpointSeconds     Number of seconds between two automatic checkpoints, 0 to disable
+     * @param metrics               File the metrics of every generation are written to or <tt>null</tt>
+     * @throws IOException If the metrics file could not be created
+     */
+    SimulationThread(FlappyConfiguration config, File checkpoint, int checkpointGenerations, float checkpointSeconds,
+                     File metrics) throws IOException {
+        simulation = new FlappySimulation(config);
+        checkpoints = new CheckpointWriter(checkpoint, simulation, checkpointGenerations, checkpointSeconds);
+        // The viewer always collects metrics for its debug overlay, they only cost a few reads of the clock per step
+        this.metrics = new Metrics(simulation.getBirdCount());
+        simulation.setMetrics(this.metrics);
+        if (metrics != null) metricsWriter = new MetricsWriter(metrics);
+        snapshots = new TripleBuffer<>(new Snapshot(simulation), new Snapshot(simulation), new Snapshot(simulation));
+        publish();
+        startCountdown();
+
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        while (running) {
+            Runnable command;
+            while ((command = commands.poll()) != null)
+                command.run();
+
+            boolean unlimited = maxThroughput || fastForward;
+            if (!paused && countdown > 0) countdown--;
+            else if (!paused) {
+                // In max throughput mode and while fast forwarding the simulation steps until the frame is used up
+                long deadline = System.nanoTime() + FRAME;
+                for (int iter = 0; unlimited || iter < iterationsPerTick; iter++) {
+                    tickCounter++;
+                    boolean ended = simulation.step();
+                    checkpoints.update();
+                    if (ended) {
+                        writeMetrics();
+                        fastForward = false;
+                        startCountdown();
+                        if (!maxThroughput) break;
+                    }
+                    if (unlimited && (iter & 63) == 63 && System.nanoTime() >= deadline) break;
+                }
+            }
+
+            long now = System.nanoTime();
+            if (now - tickCounterStart >= 1_000_000_000L) {
+                ticksPerSecond = (int) (tickCounter * 1_000_000_000L / (now - tickCounterStart));
+                tickCounter = 0;
+                tickCounterStart = now;
+            }
+            publish();
+
+            // Without a limit the next frame starts right away, otherwise the simulation waits for it
+            next = unlimited && !paused ? now : Math.max(next + FRAME, now - FRAME);
+            while (running && (now = System.nanoTime()) < next)
+                LockSupport.parkNanos(next - now);
+        }
+    }
+
+    private void writeMetrics() {
+        if (metricsWriter == null) return;
+        try {
+            metricsWriter.write(metrics);
+        } catch (IOException e) {
+            messages.add("Could not write metrics: " + e.getLocalizedMessage());
+            closeMetrics();
+        }
+    }
+
+    private void closeMetrics() {
+        try {
+            if (metricsWriter != null) metricsWriter.close();
+        } catch (IOException ignored) {
+        }
+        metricsWriter = null;
+    }
+
+    private void publish() {
+        Snapshot snapshot = snapshots.back();
+        snapshot.capture(simulation);
+        snapshot.ticksPerSecond = ticksPerSecond;
+        snapshot.paused = paused;
+        snapshot.fastForward = fastForward;
+        snapshots.publish();
+    }
+
+    private void startCountdown() {
+        countdown = maxThroughput ? 0 : (iterationsPerTick != 1 ? 6 : 60);
+    }
+
+    /**
+     * @return The latest snapshot, it stays valid until the next call
+     */
+    Snapshot read() {
+        return snapshots.read();
+    }
+
+    /**
+     * Runs a command on the simulation thread before its next frame
+     */
+    void execute(Runnable command) {
+        commands.add(command);
+    }
+
+    /**
+     * @return A status message of a command or <tt>null</tt>
+     */
+    String pollMessage() {
+        return messages.poll();
+    }
+
+    void save() {
+        execute(() -> messages.add(checkpoints.save() ? "Saving population" : "Saving once the last save is written"));
+    }
+
+    void restore(Checkpoint checkpoint) {
+        execute(() -> {
+            try {
+                checkpoint.restore(simulation);
+                startCountdown();
+                messages.add("Loaded " + checkpoint.getGeneration() + ". Gen");
+            } catch (IllegalArgumentException e) {
+                messages.add("Could not load: " + e.getLocalizedMessage());
+            }
+        });
+    }
+
+    void restart(long seed) {
+        execute(() -> {
+            simulation.restart(seed);
+            startCountdown();
+        });
+    }
+
+    /**
+     * @return The metrics of the simulation, the viewer adds its frames to them
+     */
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    CheckpointWriter getCheckpoints() {
+        return checkpoints;
+    }
+
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    void setMaxThroughput(boolean maxThroughput) {
+        this.maxThroughput = maxThroughput;
+    }
+
+    void setFastForward(boolean fastForward) {
+        this.fastForward = fastForward;
+    }
+
+    void setIterationsPerTick(int iterationsPerTick) {
+        this.iterationsPerTick = iterationsPerTick;
+    }
+
+    /**
+     * Stops the simulation thread and saves the last pending checkpoint
+     *
+     * @throws IOException If the last checkpoint could not be saved
+     */
+    void dispose() throws IOException {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeMetrics();
+        try {
+            checkpoints.close();
+        } finally {
+            simulation.dispose();
+        }
+    }
+}
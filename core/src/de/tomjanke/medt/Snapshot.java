@@ -0,0 +1,108 @@
+package de.tomjanke.medt;
+
+/**
+ * Everything the viewer draws of one moment of a {@link FlappySimulation}.
+ * Snapshots are reused through a {@link TripleBuffer}, they are only written by the simulation thread
+ * before they are published and only read by the render thread afterwards.
+ */
+class Snapshot {
+
+    /**
+     * Number of pixel rows the birds are binned into
+     */
+    static final int ROWS = 1024;
+
+    /**
+     * Number of living birds, except the showcased one, in every pixel row.
+     * Birds in the same row look the same, so each occupied row only needs to be drawn once.
+     */
+    final int[] rowCounts = new int[ROWS];
+
+    /**
+     * The occupied rows
+     */
+    final int[] rows = new int[ROWS];
+    int rowCount;
+
+    /**
+     * The showcased bird, the first living one, and its network after its last decision
+     */
+    int first;
+    float firstBird;
+    final float[] weights,
+            neurons;
+    final Topology topology;
+
+    final float[] heights;
+    float pipeX;
+
+    int score,
+            bestScore,
+            generation,
+            bestScoreGen,
+            alive,
+            ticks,
+            ticksPerSecond;
+    boolean paused,
+            fastForward;
+
+    /**
+     * Metrics of the last finished generation
+     */
+    final Metrics.Generation metrics = new Metrics.Generation();
+
+    Snapshot(FlappySimulation simulation) {
+        topology = simulation.getTopology();
+        weights = new float[topology.getWeightCount()];
+        neurons = new float[topology.getNeuronCount()];
+        heights = new float[simulation.getHeightCount()];
+        first = -1;
+    }
+
+    /**
+     * Copies the current state of a simulation, must be called on the simulation thread
+     */
+    void capture(FlappySimulation simulation) {
+        first = simulation.getFirstAlive();
+        for (int i = 0; i < rowCount; i++)
+            rowCounts[rows[i]] = 0;
+        rowCount = 0;
+        for (int i = 0; i < simulation.getAlive(); i++) {
+            int bird = simulation.getLivingBird(i);
+            if (bird == first) continue;
+            int row = Math.max(0, Math.min(ROWS - 1, (int) simulation.getBird(bird)));
+            if (rowCounts[row]++ == 0) rows[rowCount++] = row;
+        }
+
+        if (first != -1) {
+            firstBird = simulation.getBird(first);
+            NeuralNet net = simulation.showcase(first);
+            System.arraycopy(net.getWeights(), 0, weights, 0, weights.length);
+            for (int layer = 0, n = 0; layer < topology.getLayerCount(); layer++)
+                for (int i = 0; i < topology.getSize(layer); i++)
+                    neurons[n++] = net.getNeuron(layer, i);
+        }
+
+        for (int i = 0; i < heights.length; i++)
+            heights[i] = simulation.getHeight(i);
+        pipeX = simulation.getPipeX();
+        score = simulation.getScore();
+        bestScore = simulation.getBestScore();
+        generation = simulation.getGeneration();
+        bestScoreGen = simulation.getBestScoreGen();
+        alive = simulation.getAlive();
+        ticks = simulation.getTicks();
+        if (simulation.getMetrics() != null) metrics.set(simulation.getMetrics().getLast());
+    }
+
+    /**
+     * @return The weight from neuron <tt>from</tt> of <tt>layer</tt> to neuron <tt>to</tt> of the next layer
+     */
+    float getWeight(int layer, int from, int to) {
+        return weights[topology.getWeightOffset(layer) + to * topology.getSize(layer) + from];
+    }
+
+    float getNeuron(int layer, int index) {
+        return neurons[topology.getNeuronOffset(layer) + index];
+    }
+}
@@ -0,0 +1,167 @@
+package de.tomjanke.medt;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Layout of a feed-forward network: the size of every layer and the activations of the hidden and output layers.
+ * <p>
+ * The weights of a network are stored in one contiguous array, layer by layer.
+ * The weight from neuron <tt>i</tt> of one layer to neuron <tt>n</tt> of the next layer
+ * is at <tt>getWeightOffset(layer) + n * getSize(layer) + i</tt>.
+ */
+public class Topology {
+
+    /**
+     * The original network: 4 inputs, 5 hidden neurons, 1 output and no activation function at all
+     */
+    public static final Topology DEFAULT = new Topology(new int[]{4, 5, 1}, Activation.IDENTITY, Activation.IDENTITY);
+
+    private final int[] sizes,
+            neuronOffsets,
+            weightOffsets;
+    private final Activation hidden,
+            output;
+
+    /**
+     * @param sizes  Size of every layer, starting with the input layer
+     * @param hidden Activation of the hidden layers
+     * @param output Activation of the output layer
+     * @throws IllegalArgumentException If there are less than two layers or an empty layer
+     */
+    public Topology(int[] sizes, Activation hidden, Activation output) {
+        if (sizes.length < 2) throw new IllegalArgumentException("A network needs at least an input and an output layer");
+        this.sizes = sizes.clone();
+        this.hidden = hidden;
+        this.output = output;
+
+        neuronOffsets = new int[sizes.length + 1];
+        weightOffsets = new int[sizes.length];
+        for (int layer = 0; layer < sizes.length; layer++) {
+            if (sizes[layer] < 1) throw new IllegalArgumentException("Layer " + layer + " is empty");
+            neuronOffsets[layer + 1] = neuronOffsets[layer] + sizes[layer];
+            if (layer > 0)
+                weightOffsets[layer] = weightOffsets[layer - 1] + sizes[layer - 1] * sizes[layer];
+        }
+    }
+
+    /**
+     * Parses a topology like <tt>4,8,8,1</tt>
+     *
+     * @param sizes  Comma separated layer sizes
+     * @param hidden Name of the hidden activation, e.g. <tt>tanh</tt>
+     * @return The topology, its output layer stays linear
+     * @throws IllegalArgumentException If the sizes or the activation are invalid
+     */
+    public static Topology parse(String sizes, String hidden) {
+        String[] parts = sizes.split(",");
+        int[] layers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            layers[i] = Integer.parseInt(parts[i].trim());
+        return new Topology(layers, Activation.valueOf(hidden.toUpperCase(Locale.ROOT)), Activation.IDENTITY);
+    }
+
+    /**
+     * @return Layer count, the size of every layer and the activations, e.g. to save the topology
+     */
+    int[] encode() {
+        int[] code = new int[sizes.length + 3];
+        code[0] = sizes.length;
+        System.arraycopy(sizes, 0, code, 1, sizes.length);
+        code[sizes.length + 1] = hidden.ordinal();
+        code[sizes.length + 2] = output.ordinal();
+        return code;
+    }
+
+    /**
+     * Creates a topology from the result of {@link #encode()}
+     *
+     * @throws IllegalArgumentException If the code is no valid topology
+     */
+    static Topology decode(int[] code) {
+        int layers = code[0];
+        if (layers < 2 || code.length != layers + 3) throw new IllegalArgumentException("Invalid topology");
+        Activation[] activations = Activation.values();
+        int hidden = code[layers + 1],
+                output = code[layers + 2];
+        if (hidden < 0 || hidden >= activations.length || output < 0 || output >= activations.length)
+            throw new IllegalArgumentException("Unknown activation");
+        return new Topology(Arrays.copyOfRange(code, 1, layers + 1), activations[hidden], activations[output]);
+    }
+
+    public int getLayerCount() {
+        return sizes.length;
+    }
+
+    public int getSize(int layer) {
+        return sizes[layer];
+    }
+
+    public int getInputSize() {
+        return sizes[0];
+    }
+
+    public int getOutputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * @return Index of the first neuron of a layer in the contiguous neuron array
+     */
+    public int getNeuronOffset(int layer) {
+        return neuronOffsets[layer];
+    }
+
+    public int getNeuronCount() {
+        return neuronOffsets[sizes.length];
+    }
+
+    /**
+     * @param layer Layer the weights lead <b>from</b>, <tt>0</tt> to <tt>getLayerCount() - 2</tt>
+     * @return Index of the first weight between <tt>layer</tt> and <tt>layer + 1</tt>
+     */
+    public int getWeightOffset(int layer) {
+        return weightOffsets[layer];
+    }
+
+    public int getWeightCount() {
+        return weightOffsets[sizes.length - 1];
+    }
+
+    /**
+     * @return Activation of the given layer, the input layer has none
+     */
+    public Activation getActivation(int layer) {
+        if (layer == 0) return Activation.IDENTITY;
+        return layer == sizes.length - 1 ? output : hidden;
+    }
+
+    public Activation getHiddenActivation() {
+        return hidden;
+    }
+
+    public Activation getOutputActivation() {
+        return output;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Topology)) return false;
+        Topology other = (Topology) o;
+        return Arrays.equals(sizes, other.sizes) && hidden == other.hidden && output == other.output;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(sizes) * 31 + hidden.hashCode() * 7 + output.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int size : sizes)
+            builder.append(builder.length() == 0 ? "" : ",").append(size);
+        return builder.append(" ").append(hidden.name().toLowerCase(Locale.ROOT)).toString();
+    }
+}
@@ -0,0 +1,54 @@
+package de.tomjanke.medt;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the latest of a stream of values from one writer thread to one reader thread without locks.
+ * <p>
+ * The writer fills its back buffer and swaps it with the middle one, the reader swaps the middle one with its front
+ * buffer whenever a new value was published. Neither side ever waits for the other, and the reader never sees
+ * a buffer the writer is still filling.
+ *
+ * @param <T> Type of the reused buffers
+ */
+class TripleBuffer<T> {
+
+    /**
+     * Set on the middle index when it holds a value the reader has not seen yet
+     */
+    private static final int FRESH = 4;
+
+    private final Object[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0,
+            front = 2;
+
+    TripleBuffer(T first, T second, T third) {
+        buffers = new Object[]{first, second, third};
+    }
+
+    /**
+     * @return The buffer the writer fills next
+     */
+    @SuppressWarnings("unchecked")
+    T back() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Publishes the back buffer, the writer continues with an older one
+     */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * @return The latest published buffer, it stays valid until the next call
+     */
+    @SuppressWarnings("unchecked")
+    T read() {
+        if ((middle.get() & FRESH) != 0)
+            front = middle.getAndSet(front) & ~FRESH;
+        return (T) buffers[front];
+    }
+}
@@ -0,0 +1,83 @@
+package de.tomjanke.medt;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the step loop allocates nothing once it is warmed up, across generation turnover as well
+ */
+public class AllocationTest {
+
+    private static final int STEPS = 20000,
+            WARMUP_ROUNDS = 10;
+
+    @Test
+    public void defaultConfiguration() {
+        assertNoAllocations(configuration());
+    }
+
+    @Test
+    public void severalCourses() {
+        FlappyConfiguration config = configuration();
+        config.courses = 3;
+        assertNoAllocations(config);
+    }
+
+    @Test
+    public void severalCoursesWithRankSelection() {
+        FlappyConfiguration config = configuration();
+        config.courses = 2;
+        config.selection = Selection.RANK;
+        assertNoAllocations(config);
+    }
+
+    @Test
+    public void maxTicks() {
+        FlappyConfiguration config = configuration();
+        config.courses = 2;
+        config.maxTicks = 2000;
+        assertNoAllocations(config);
+    }
+
+    /**
+     * @return The default configuration on the calling thread, so every allocation is counted
+     */
+    private static FlappyConfiguration configuration() {
+        FlappyConfiguration config = new FlappyConfiguration();
+        config.threads = 1;
+        config.seed = 1;
+        return config;
+    }
+
+    private static void assertNoAllocations(FlappyConfiguration config) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("This JVM does not count allocations per thread", bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+
+        // Warm up with other simulations first, so class loading and JIT compilation are not counted
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            FlappySimulation warmup = new FlappySimulation(config);
+            for (int i = 0; i < STEPS; i++) warmup.step();
+            warmup.dispose();
+        }
+
+        // A fresh population dies quickly, so the measured steps cover several generations
+        FlappySimulation simulation = new FlappySimulation(config);
+        int generation = simulation.getGeneration();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < STEPS; i++) simulation.step();
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        int generations = simulation.getGeneration() - generation;
+        simulation.dispose();
+
+        assertTrue("The steps did not reach a new generation", generations > 0);
+        assertEquals("Bytes allocated in " + STEPS + " steps and " + generations + " generations", 0, allocated);
+    }
+}
@@ -0,0 +1,121 @@
+package de.tomjanke.medt;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a saved population continues exactly like the original and that damaged files are rejected
+ */
+public class CheckpointTest {
+
+    private static final int GENERATIONS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restoredRunContinuesTheSame() throws IOException {
+        FlappyConfiguration config = Training.configuration();
+        FlappySimulation simulation = new FlappySimulation(config);
+        new Training(simulation, GENERATIONS);
+        File file = folder.newFile("population.dat");
+        Checkpoint.of(simulation).write(file);
+
+        Checkpoint checkpoint = Checkpoint.read(file);
+        assertEquals(simulation.getGeneration(), checkpoint.getGeneration());
+        assertEquals(config.seed, checkpoint.getSeed());
+        // The checkpoint brings its own seed
+        config.seed = 2;
+        FlappySimulation restored = new FlappySimulation(config);
+        checkpoint.restore(restored);
+        assertArrayEquals("Weights", Training.weights(simulation), Training.weights(restored));
+
+        // The restored run goes on like one that was never interrupted
+        Training uninterrupted = new Training(new FlappySimulation(Training.configuration()), 2 * GENERATIONS);
+        Training continued = new Training(restored, GENERATIONS);
+        assertArrayEquals("Scores", Arrays.copyOfRange(uninterrupted.scores, GENERATIONS, 2 * GENERATIONS), continued.scores);
+        assertArrayEquals("Weights", uninterrupted.weights, continued.weights);
+    }
+
+    @Test
+    public void startsWithMagic() throws IOException {
+        File file = save();
+        byte[] magic = new byte[4];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.readFully(magic);
+        }
+        assertEquals("NFCK", new String(magic, "US-ASCII"));
+    }
+
+    @Test
+    public void corruptedHeaderIsRejected() throws IOException {
+        // The generation
+        assertRejected(corrupt(save(), 12));
+    }
+
+    @Test
+    public void corruptedTopologyIsRejected() throws IOException {
+        // The size of the hidden layer
+        assertRejected(corrupt(save(), 40));
+    }
+
+    @Test
+    public void corruptedWeightsAreRejected() throws IOException {
+        File file = save();
+        assertRejected(corrupt(file, (int) file.length() - 1));
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws IOException {
+        File file = save();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 4);
+        }
+        assertRejected(file);
+    }
+
+    @Test
+    public void shippedNetworkIsRead() throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(new File("assets/network.dat"));
+        assertEquals(Topology.DEFAULT, checkpoint.getTopology());
+    }
+
+    private File save() throws IOException {
+        FlappySimulation simulation = new FlappySimulation(Training.configuration());
+        new Training(simulation, 1);
+        File file = folder.newFile();
+        Checkpoint.of(simulation).write(file);
+        return file;
+    }
+
+    /**
+     * Flips the bits of one byte
+     */
+    private static File corrupt(File file, int position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(~value);
+        }
+        return file;
+    }
+
+    private static void assertRejected(File file) {
+        try {
+            Checkpoint.read(file);
+            fail("The damaged checkpoint was read");
+        } catch (IOException expected) {
+        }
+    }
+}
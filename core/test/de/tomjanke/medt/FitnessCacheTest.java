@@ -0,0 +1,28 @@
+package de.tomjanke.medt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that remembering the fitness of networks changes nothing but the work
+ */
+public class FitnessCacheTest {
+
+    private static final int GENERATIONS = 10;
+
+    @Test
+    public void sameResultsWithCache() {
+        FlappyConfiguration config = Training.configuration();
+        config.fixedCourse = true;
+        config.selection = Selection.TOURNAMENT;
+        config.elitism = 5;
+        Training uncached = new Training(new FlappySimulation(config), GENERATIONS);
+
+        config.fitnessCacheBytes = 1 << 20;
+        FlappySimulation simulation = new FlappySimulation(config);
+        Training cached = new Training(simulation, GENERATIONS);
+        uncached.assertSame(cached);
+        assertTrue("The elite was never found in the cache", simulation.getCacheHits() > 0);
+    }
+}
@@ -0,0 +1,31 @@
+package de.tomjanke.medt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how the constructors initialize the weights
+ */
+public class NeuralNetTest {
+
+    @Test
+    public void defaultNetworkIsRandom() {
+        NeuralNet network = new NeuralNet();
+        assertEquals(Topology.DEFAULT, network.getTopology());
+        int zeros = 0;
+        for (float weight : network.getWeights()) {
+            assertTrue("Weight " + weight + " is out of range", weight >= -1 && weight < 1);
+            if (weight == 0) zeros++;
+        }
+        assertTrue("The default network is not random", zeros < network.getWeights().length);
+    }
+
+    @Test
+    public void networkOfTopologyIsZero() {
+        // Networks that are only loaded into start with zero weights
+        for (float weight : new NeuralNet(Topology.DEFAULT).getWeights())
+            assertEquals(0, weight, 0);
+    }
+}
@@ -0,0 +1,38 @@
+package de.tomjanke.medt;
+
+import org.junit.Test;
+
+/**
+ * Checks that a population outside of the heap trains exactly like one on the heap
+ */
+public class OffHeapTest {
+
+    private static final int GENERATIONS = 8;
+
+    @Test
+    public void legacySelection() {
+        assertSameOffHeap(Training.configuration());
+    }
+
+    @Test
+    public void rankSelectionOnSeveralCourses() {
+        FlappyConfiguration config = Training.configuration();
+        config.selection = Selection.RANK;
+        config.courses = 2;
+        assertSameOffHeap(config);
+    }
+
+    @Test
+    public void quantizedWeights() {
+        FlappyConfiguration config = Training.configuration();
+        config.precision = Precision.INT8;
+        config.selection = Selection.TOURNAMENT;
+        assertSameOffHeap(config);
+    }
+
+    private static void assertSameOffHeap(FlappyConfiguration config) {
+        Training heap = new Training(new FlappySimulation(config), GENERATIONS);
+        config.offHeap = true;
+        heap.assertSame(new Training(new FlappySimulation(config), GENERATIONS));
+    }
+}
@@ -0,0 +1,77 @@
+package de.tomjanke.medt;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a recorded run can be verified and resumed bit for bit, including its termination policy
+ */
+public class ReplayTest {
+
+    private static final int GENERATIONS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordedGenerationsVerify() throws IOException {
+        File file = folder.newFile("run.replay");
+        FlappySimulation simulation = new FlappySimulation(Training.configuration());
+        record(simulation, file, false, GENERATIONS);
+        simulation.dispose();
+
+        Replay replay = Replay.read(file);
+        assertEquals(GENERATIONS, replay.getRecordCount());
+        for (int i = 0; i < replay.getRecordCount(); i++)
+            assertTrue("Generation " + replay.getRecord(i).getGeneration() + " differs", replay.verify(i, 1));
+    }
+
+    @Test
+    public void resumedRunContinuesTheSame() throws IOException {
+        Training uninterrupted = new Training(new FlappySimulation(Training.configuration()), GENERATIONS);
+
+        File file = folder.newFile("run.replay");
+        int half = GENERATIONS / 2;
+        FlappySimulation simulation = new FlappySimulation(Training.configuration());
+        int[] first = record(simulation, file, false, half);
+        simulation.dispose();
+        FlappySimulation resumed = Replay.read(file).resume(1);
+        assertEquals(Training.configuration().maxTicks, resumed.getMaxTicks());
+        int[] second = record(resumed, file, true, GENERATIONS - half);
+        int[] weights = Training.weights(resumed);
+        resumed.dispose();
+
+        int[] scores = Arrays.copyOf(first, GENERATIONS);
+        System.arraycopy(second, 0, scores, half, second.length);
+        assertArrayEquals("Scores", uninterrupted.scores, scores);
+        assertArrayEquals("Weights", uninterrupted.weights, weights);
+        assertEquals(GENERATIONS, Replay.read(file).getRecordCount());
+    }
+
+    /**
+     * Trains and records a number of generations
+     *
+     * @return The score of every generation
+     */
+    private static int[] record(FlappySimulation simulation, File file, boolean append, int generations) throws IOException {
+        int[] scores = new int[generations];
+        try (Replay.Writer writer = new Replay.Writer(file, simulation, append)) {
+            for (int generation = 0; generation < generations; ) {
+                if (simulation.step()) {
+                    writer.record(simulation);
+                    scores[generation++] = simulation.getLastScore();
+                }
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,56 @@
+package de.tomjanke.medt;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the second parent of a crossover is never the first one, even if a single bird has all the fitness
+ */
+public class SelectionTest {
+
+    private static final Selection[] SELECTIONS = {Selection.TOURNAMENT, Selection.RANK, Selection.PROPORTIONAL};
+
+    @Test
+    public void distinctParentsWithSkewedFitness() {
+        // The best bird has all of the fitness, the others none
+        long[] cumulative = new long[50];
+        Arrays.fill(cumulative, 1000);
+        assertDistinctParents(cumulative);
+    }
+
+    @Test
+    public void distinctParentsWithSpreadFitness() {
+        long[] cumulative = new long[50];
+        long sum = 0;
+        for (int rank = 0; rank < cumulative.length; rank++)
+            cumulative[rank] = sum += cumulative.length - rank;
+        assertDistinctParents(cumulative);
+    }
+
+    @Test
+    public void distinctParentsWithoutFitness() {
+        assertDistinctParents(new long[50]);
+    }
+
+    @Test
+    public void distinctParentsOfTwoBirds() {
+        assertDistinctParents(new long[]{10, 10});
+    }
+
+    private static void assertDistinctParents(long[] cumulative) {
+        Random random = new Random(1);
+        for (Selection selection : SELECTIONS)
+            for (int i = 0; i < 10000; i++) {
+                int a = selection.select(cumulative, random, -1),
+                        b = selection.select(cumulative, random, a);
+                assertTrue(selection + " picked rank " + a, a >= 0 && a < cumulative.length);
+                assertTrue(selection + " picked rank " + b, b >= 0 && b < cumulative.length);
+                assertNotEquals(selection + " crossed a bird with itself", a, b);
+            }
+    }
+}
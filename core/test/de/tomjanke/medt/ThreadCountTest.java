@@ -0,0 +1,40 @@
+package de.tomjanke.medt;
+
+import org.junit.Test;
+
+/**
+ * Checks that the results do not depend on the number of threads the chunks are simulated on
+ */
+public class ThreadCountTest {
+
+    private static final int GENERATIONS = 3;
+
+    @Test
+    public void legacySelection() {
+        assertSameOnThreads(configuration());
+    }
+
+    @Test
+    public void rankSelectionOnSeveralCourses() {
+        FlappyConfiguration config = configuration();
+        config.selection = Selection.RANK;
+        config.courses = 2;
+        assertSameOnThreads(config);
+    }
+
+    /**
+     * @return A population that is split into several chunks
+     */
+    private static FlappyConfiguration configuration() {
+        FlappyConfiguration config = Training.configuration();
+        config.birdCount = 2500;
+        config.maxTicks = 300;
+        return config;
+    }
+
+    private static void assertSameOnThreads(FlappyConfiguration config) {
+        Training single = new Training(new FlappySimulation(config), GENERATIONS);
+        config.threads = 4;
+        single.assertSame(new Training(new FlappySimulation(config), GENERATIONS));
+    }
+}
@@ -0,0 +1,62 @@
+package de.tomjanke.medt;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * A short training run that records everything a reproducible run must repeat bit for bit:
+ * the score and fitness of every generation and the weights of the final population
+ */
+class Training {
+
+    final int[] scores,
+            fitness,
+            weights;
+
+    /**
+     * Trains a simulation for the given number of generations and disposes it
+     */
+    Training(FlappySimulation simulation, int generations) {
+        scores = new int[generations];
+        fitness = new int[generations];
+        for (int generation = 0; generation < generations; ) {
+            if (simulation.step()) {
+                scores[generation] = simulation.getLastScore();
+                fitness[generation] = simulation.getLastFitness();
+                generation++;
+            }
+        }
+        weights = weights(simulation);
+        simulation.dispose();
+    }
+
+    /**
+     * @return The bits of all weights of the population, network by network
+     */
+    static int[] weights(FlappySimulation simulation) {
+        int count = simulation.getTopology().getWeightCount();
+        int[] bits = new int[simulation.getBirdCount() * count];
+        for (int i = 0; i < simulation.getBirdCount(); i++) {
+            float[] network = simulation.getNetwork(i).getWeights();
+            for (int w = 0; w < count; w++)
+                bits[i * count + w] = Float.floatToIntBits(network[w]);
+        }
+        return bits;
+    }
+
+    /**
+     * @return A small configuration on the calling thread whose generations end after a bounded time
+     */
+    static FlappyConfiguration configuration() {
+        FlappyConfiguration config = new FlappyConfiguration();
+        config.threads = 1;
+        config.seed = 1;
+        config.maxTicks = 2000;
+        return config;
+    }
+
+    void assertSame(Training other) {
+        assertArrayEquals("Scores", scores, other.scores);
+        assertArrayEquals("Fitness", fitness, other.fitness);
+        assertArrayEquals("Weights", weights, other.weights);
+    }
+}
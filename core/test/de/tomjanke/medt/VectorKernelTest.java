@@ -0,0 +1,38 @@
+package de.tomjanke.medt;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Checks that the forward pass on the Vector API trains exactly like the scalar one.
+ * It is skipped unless the <tt>vector</tt> module is on the classpath of a Java 16+ JVM, see the readme.
+ */
+public class VectorKernelTest {
+
+    private static final int GENERATIONS = 8;
+
+    @Test
+    public void sameAsScalar() {
+        assertSameAsScalar(Training.configuration());
+    }
+
+    @Test
+    public void sameAsScalarWithDeepNetworks() {
+        // An odd number of birds leaves a tail that does not fill a vector
+        FlappyConfiguration config = Training.configuration();
+        config.birdCount = 101;
+        config.courses = 2;
+        config.topology = Topology.parse("4,8,8,1", "tanh");
+        config.selection = Selection.RANK;
+        assertSameAsScalar(config);
+    }
+
+    private static void assertSameAsScalar(FlappyConfiguration config) {
+        Assume.assumeTrue("The vector module is not available", ForwardKernel.vector() != null);
+        Training scalar = new Training(new FlappySimulation(config), GENERATIONS);
+        config.vector = true;
+        FlappySimulation simulation = new FlappySimulation(config);
+        Assume.assumeTrue(simulation.isVector());
+        scalar.assertSame(new Training(simulation, GENERATIONS));
+    }
+}
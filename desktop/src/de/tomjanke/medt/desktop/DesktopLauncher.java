@@ -2,7 +2,11 @@ package de.tomjanke.medt.desktop;
 
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import de.tomjanke.medt.FlappyConfiguration;
 import de.tomjanke.medt.NeuralFlappy;
+import de.tomjanke.medt.Topology;
+
+import java.io.File;
 
 public class DesktopLauncher {
     public static void main(String[] arg) {
@@ -13,6 +17,23 @@ public class DesktopLauncher {
         config.title = "A Neural Network plays Flappy Bird";
         config.foregroundFPS = 60;
         config.backgroundFPS = 60;
-        new LwjglApplication(new NeuralFlappy(), config);
+
+        FlappyConfiguration flappy = new FlappyConfiguration();
+        String layers = "4,5,1",
+                activation = "identity";
+        File metrics = null;
+        int checkpointGenerations = 0;
+        float checkpointSeconds = 0;
+        for (int i = 0; i < arg.length - 1; i++) {
+            if (arg[i].equals("--birds")) flappy.birdCount = Integer.parseInt(arg[++i]);
+            else if (arg[i].equals("--threads")) flappy.threads = Integer.parseInt(arg[++i]);
+            else if (arg[i].equals("--topology")) layers = arg[++i];
+            else if (arg[i].equals("--activation")) activation = arg[++i];
+            else if (arg[i].equals("--metrics")) metrics = new File(arg[++i]);
+            else if (arg[i].equals("--checkpoint-generations")) checkpointGenerations = Integer.parseInt(arg[++i]);
+            else if (arg[i].equals("--checkpoint-seconds")) checkpointSeconds = Float.parseFloat(arg[++i]);
+        }
+        flappy.topology = Topology.parse(layers, activation);
+        new LwjglApplication(new NeuralFlappy(flappy, metrics, checkpointGenerations, checkpointSeconds), config);
     }
 }
@@ -0,0 +1,392 @@
+package de.tomjanke.medt.headless;
+
+import de.tomjanke.medt.Aggregation;
+import de.tomjanke.medt.Checkpoint;
+import de.tomjanke.medt.CheckpointWriter;
+import de.tomjanke.medt.Crossover;
+import de.tomjanke.medt.FlappyConfiguration;
+import de.tomjanke.medt.FlappySimulation;
+import de.tomjanke.medt.Drift;
+import de.tomjanke.medt.IslandModel;
+import de.tomjanke.medt.Metrics;
+import de.tomjanke.medt.MetricsWriter;
+import de.tomjanke.medt.Precision;
+import de.tomjanke.medt.Replay;
+import de.tomjanke.medt.Selection;
+import de.tomjanke.medt.Topology;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Trains the birds without a window or GL context, as fast as the CPU allows.
+ * <p>
+ * Run without arguments to train a single population with the default settings, see {@link #USAGE} for the options.
+ */
+public class HeadlessLauncher {
+
+    private static final String USAGE = "Usage: [--generations N] [--birds N] [--threads N]"
+            + " [--topology 4,8,8,1] [--activation identity|relu|tanh|sigmoid] [--precision float|int16|int8] [--vector] [--off-heap]"
+            + " [--max-ticks N] [--max-score N] [--stop-when-decided] [--target-score N]"
+            + " [--selection legacy|tournament|rank|proportional] [--crossover uniform|arithmetic]"
+            + " [--elitism N] [--mutation M] [--adaptive-mutation] [--threshold T] [--gravity G] [--flap F] [--fixed-course] [--fitness-cache MB]"
+            + " [--courses K] [--aggregation mean|min] [--novelty WEIGHT] [--novelty-neighbors K] [--novelty-archive N]"
+            + " [--islands N] [--migration-interval GENERATIONS] [--seed SEED]"
+            + " [--replay FILE] [--resume FILE] [--verify-replay FILE] [--load FILE] [--save FILE]"
+            + " [--checkpoint FILE] [--checkpoint-generations N] [--checkpoint-seconds S] [--metrics FILE.csv|FILE.jsonl]"
+            + " [--check-allocations STEPS] [--check-precision STEPS] [--sweep SPEC] [--results FILE.csv]";
+
+    public static void main(String[] arg) throws IOException, InterruptedException {
+        int generations = 100;
+        FlappyConfiguration config = new FlappyConfiguration();
+        config.threads = Runtime.getRuntime().availableProcessors();
+        int allocationSteps = 0,
+                precisionSteps = 0;
+        int targetScore = 0;
+        int islands = 1;
+        int migrationInterval = 10;
+        File replayFile = null,
+                resumeFile = null,
+                verifyFile = null,
+                loadFile = null,
+                saveFile = null,
+                checkpointFile = null,
+                metricsFile = null,
+                sweepFile = null,
+                resultsFile = new File("sweep.csv");
+        int checkpointGenerations = 0;
+        float checkpointSeconds = 0;
+        String layers = null,
+                activation = "identity";
+
+        for (int i = 0; i < arg.length; i++) {
+            switch (arg[i]) {
+                case "--generations":
+                    generations = Integer.parseInt(arg[++i]);
+                    break;
+                case "--birds":
+                    config.birdCount = Integer.parseInt(arg[++i]);
+                    break;
+                case "--threads":
+                    config.threads = Integer.parseInt(arg[++i]);
+                    break;
+                case "--topology":
+                    layers = arg[++i];
+                    break;
+                case "--activation":
+                    activation = arg[++i];
+                    break;
+                case "--precision":
+                    config.precision = Precision.valueOf(arg[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "--vector":
+                    config.vector = true;
+                    break;
+                case "--off-heap":
+                    config.offHeap = true;
+                    break;
+                case "--max-ticks":
+                    config.maxTicks = Integer.parseInt(arg[++i]);
+                    break;
+                case "--max-score":
+                    config.maxScore = Integer.parseInt(arg[++i]);
+                    break;
+                case "--stop-when-decided":
+                    config.stopWhenDecided = true;
+                    break;
+                case "--target-score":
+                    targetScore = Integer.parseInt(arg[++i]);
+                    break;
+                case "--selection":
+                    config.selection = Selection.valueOf(arg[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "--crossover":
+                    config.crossover = Crossover.valueOf(arg[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "--elitism":
+                    config.elitism = Integer.parseInt(arg[++i]);
+                    break;
+                case "--mutation":
+                    config.mutation = Float.parseFloat(arg[++i]);
+                    break;
+                case "--adaptive-mutation":
+                    config.adaptiveMutation = true;
+                    break;
+                case "--fixed-course":
+                    config.fixedCourse = true;
+                    break;
+                case "--fitness-cache":
+                    config.fitnessCacheBytes = (long) (Double.parseDouble(arg[++i]) * 1024 * 1024);
+                    break;
+                case "--courses":
+                    config.courses = Integer.parseInt(arg[++i]);
+                    break;
+                case "--aggregation":
+                    config.aggregation = Aggregation.valueOf(arg[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "--threshold":
+                    config.breedingThreshold = Double.parseDouble(arg[++i]);
+                    break;
+                case "--gravity":
+                    config.gravity = Float.parseFloat(arg[++i]);
+                    break;
+                case "--flap":
+                    config.flapImpulse = Float.parseFloat(arg[++i]);
+                    break;
+                case "--novelty":
+                    config.noveltyWeight = Float.parseFloat(arg[++i]);
+                    break;
+                case "--novelty-neighbors":
+                    config.noveltyNeighbors = Integer.parseInt(arg[++i]);
+                    break;
+                case "--novelty-archive":
+                    config.noveltyArchiveRate = Integer.parseInt(arg[++i]);
+                    break;
+                case "--islands":
+                    islands = Integer.parseInt(arg[++i]);
+                    break;
+                case "--migration-interval":
+                    migrationInterval = Integer.parseInt(arg[++i]);
+                    break;
+                case "--seed":
+                    config.seed = Long.parseLong(arg[++i]);
+                    break;
+                case "--replay":
+                    replayFile = new File(arg[++i]);
+                    break;
+                case "--resume":
+                    resumeFile = new File(arg[++i]);
+                    break;
+                case "--verify-replay":
+                    verifyFile = new File(arg[++i]);
+                    break;
+                case "--load":
+                    loadFile = new File(arg[++i]);
+                    break;
+                case "--save":
+                    saveFile = new File(arg[++i]);
+                    break;
+                case "--checkpoint":
+                    checkpointFile = new File(arg[++i]);
+                    break;
+                case "--checkpoint-generations":
+                    checkpointGenerations = Integer.parseInt(arg[++i]);
+                    break;
+                case "--checkpoint-seconds":
+                    checkpointSeconds = Float.parseFloat(arg[++i]);
+                    break;
+                case "--metrics":
+                    metricsFile = new File(arg[++i]);
+                    break;
+                case "--sweep":
+                    sweepFile = new File(arg[++i]);
+                    break;
+                case "--results":
+                    resultsFile = new File(arg[++i]);
+                    break;
+                case "--check-allocations":
+                    allocationSteps = Integer.parseInt(arg[++i]);
+                    break;
+                case "--check-precision":
+                    precisionSteps = Integer.parseInt(arg[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + arg[i]);
+                    System.err.println(USAGE);
+                    System.exit(1);
+            }
+        }
+
+        if (layers != null || !activation.equals("identity"))
+            config.topology = Topology.parse(layers != null ? layers : "4,5,1", activation);
+
+        if (sweepFile != null) {
+            Sweep.read(sweepFile).run(resultsFile);
+            return;
+        }
+
+        if (allocationSteps > 0) {
+            System.exit(checkAllocations(config, allocationSteps) ? 0 : 1);
+        }
+
+        if (precisionSteps > 0) {
+            checkPrecision(config, precisionSteps);
+            return;
+        }
+
+        if (verifyFile != null) {
+            System.exit(verifyReplay(verifyFile, config.threads) ? 0 : 1);
+        }
+
+        if (islands > 1) {
+            if (metricsFile != null) {
+                System.err.println("--metrics only supports a single population");
+                System.exit(1);
+            }
+            runIslands(config, islands, migrationInterval, generations);
+            return;
+        }
+
+        // A resumed run keeps appending to its own replay
+        FlappySimulation simulation;
+        Checkpoint load = loadFile != null ? Checkpoint.read(loadFile) : null;
+        // Without an explicit topology, continue with the one of the checkpoint
+        if (load != null && layers == null) config.topology = load.getTopology();
+        if (resumeFile != null) {
+            simulation = Replay.read(resumeFile).resume(config.threads);
+            replayFile = resumeFile;
+        } else simulation = new FlappySimulation(config);
+        if (load != null) {
+            // An explicit --topology or a resumed replay may disagree with the checkpoint
+            try {
+                load.restore(simulation);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Cannot load " + loadFile + ": " + e.getMessage());
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+        CheckpointWriter checkpoints = null;
+        if (checkpointFile != null) {
+            if (checkpointGenerations == 0 && checkpointSeconds == 0) checkpointSeconds = 60;
+            checkpoints = new CheckpointWriter(checkpointFile, simulation, checkpointGenerations, checkpointSeconds);
+        }
+        Replay.Writer replay = replayFile != null ? new Replay.Writer(replayFile, simulation, resumeFile != null) : null;
+        MetricsWriter metrics = null;
+        if (metricsFile != null) {
+            simulation.setMetrics(new Metrics(simulation.getBirdCount()));
+            metrics = new MetricsWriter(metricsFile);
+        }
+        System.out.println("Seed " + simulation.getSeed());
+        if (config.vector && !simulation.isVector())
+            System.out.println("The Vector API is not available, the forward pass stays scalar");
+
+        long start = System.nanoTime();
+        long ticks = 0;
+        while (simulation.getGeneration() <= generations) {
+            int generation = simulation.getGeneration();
+            if (checkpoints == null) ticks += simulation.fastForward();
+            else {
+                boolean ended;
+                do {
+                    ticks++;
+                    ended = simulation.step();
+                    checkpoints.update();
+                } while (!ended);
+            }
+            if (replay != null) replay.record(simulation);
+            if (metrics != null) metrics.write(simulation.getMetrics());
+            System.out.println(generation + ". Gen: " + simulation.getLastScore() + " P (best " + simulation.getBestScore() + " P in " + simulation.getBestScoreGen() + ". Gen)");
+            // Compares selections by the generations and the time they need to reach a score
+            if (targetScore > 0 && simulation.getLastScore() >= targetScore) {
+                System.out.printf("Reached %d P in %d generations and %.2f s%n", targetScore, generation, (System.nanoTime() - start) / 1e9);
+                break;
+            }
+        }
+
+        simulation.dispose();
+        if (replay != null) replay.close();
+        if (metrics != null) metrics.close();
+        if (checkpoints != null) {
+            // Saves the final population after the pending checkpoints
+            checkpoints.close();
+            System.out.println(checkpoints.getWritten() + " checkpoints written");
+        }
+        if (saveFile != null) Checkpoint.of(simulation).write(saveFile);
+        if (config.fitnessCacheBytes > 0)
+            System.out.println("Fitness cache: " + simulation.getCacheHits() + " hits, " + simulation.getCacheMisses() + " misses");
+        if (simulation.isNovelty())
+            System.out.println("Novelty archive: " + simulation.getNoveltyArchiveSize() + " flights");
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d ticks in %.2f s (%.0f ticks/s)%n", ticks, seconds, ticks / seconds);
+    }
+
+    /**
+     * Evolves several islands on their own threads, the cores are used by the islands instead of the chunks
+     */
+    private static void runIslands(FlappyConfiguration config, int islands, int migrationInterval, int generations) throws InterruptedException {
+        config.threads = 1;
+        IslandModel model = new IslandModel(config, islands, migrationInterval);
+
+        long start = System.nanoTime();
+        model.run(generations, (island, generation, score, bestScore) ->
+                System.out.println("Island " + island + ", " + generation + ". Gen: " + score + " P (best " + bestScore + " P)"));
+        model.dispose();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (int i = 0; i < model.getIslandCount(); i++) {
+            FlappySimulation island = model.getIsland(i);
+            System.out.println("Island " + i + ": best " + island.getBestScore() + " P in " + island.getBestScoreGen() + ". Gen");
+        }
+        System.out.printf("%d islands in %.2f s%n", islands, seconds);
+    }
+
+    /**
+     * Simulates every recorded generation of a replay again and compares it with the record
+     *
+     * @return <tt>true</tt> if all generations were reproduced bit for bit
+     */
+    private static boolean verifyReplay(File file, int threads) throws IOException {
+        Replay replay = Replay.read(file);
+        int mismatches = 0;
+        for (int i = 0; i < replay.getRecordCount(); i++)
+            if (!replay.verify(i, threads)) {
+                System.out.println(replay.getRecord(i).getGeneration() + ". Gen differs from the replay");
+                mismatches++;
+            }
+        System.out.println(replay.getRecordCount() - mismatches + " of " + replay.getRecordCount() + " generations reproduced");
+        return mismatches == 0;
+    }
+
+    /**
+     * Verifies with the allocation counter of the current thread that the simulation
+     * allocates no memory in steady state, including the generation turnover
+     *
+     * @return <tt>true</tt> if nothing was allocated
+     */
+    private static boolean checkAllocations(FlappyConfiguration config, int steps) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("This JVM does not count allocations per thread");
+            return false;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+
+        // Warm up with another simulation first, so class loading and JIT compilation are not counted
+        // Fresh populations die quickly, so the generation turnover gets warmed up as well
+        for (int round = 0; round < 10; round++) {
+            FlappySimulation warmup = new FlappySimulation(config);
+            for (int i = 0; i < steps; i++) warmup.step();
+            warmup.dispose();
+        }
+
+        // Measure a fresh population as well, so the generation turnover is covered
+        FlappySimulation simulation = new FlappySimulation(config);
+        int generation = simulation.getGeneration();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < steps; i++) simulation.step();
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        int generations = simulation.getGeneration() - generation;
+        simulation.dispose();
+
+        System.out.println(allocated + " bytes allocated in " + steps + " steps and " + generations + " generations");
+        return allocated == 0;
+    }
+
+    /**
+     * Simulates a population with the configured precision and compares every decision with the float path
+     */
+    private static void checkPrecision(FlappyConfiguration config, int steps) {
+        FlappySimulation simulation = new FlappySimulation(config);
+        Drift drift = new Drift(simulation.getRunCount());
+        for (int i = 0; i < steps; i++)
+            if (!simulation.step()) simulation.measureDrift(drift);
+        simulation.dispose();
+        System.out.println(config.precision + ": " + drift);
+    }
+}
@@ -0,0 +1,364 @@
+package de.tomjanke.medt.headless;
+
+import de.tomjanke.medt.Crossover;
+import de.tomjanke.medt.FlappyConfiguration;
+import de.tomjanke.medt.FlappySimulation;
+import de.tomjanke.medt.Selection;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Hyperparameter sweep: trains many configurations side by side and stops the ones that clearly fall behind.
+ * <p>
+ * The spec is a text file with one setting per line, a name followed by its values, and <tt>#</tt> comments:
+ * <pre>
+ * search random        # grid (default) or random
+ * samples 20           # configurations of a random search
+ * generations 200      # generations of a job that is never stopped
+ * min-generations 10   # generations before the first comparison
+ * eta 3                # the best third continues after every comparison
+ * cpu-seconds 600      # CPU time a job may use, 0 for no limit
+ * jobs 4               # jobs at the same time, all cores by default
+ * seed 42
+ * mutation .1 .3 .5    # a list of values
+ * flap 3.5..4.5        # a range, random search only
+ * </pre>
+ * The parameters are <tt>birds</tt>, <tt>mutation</tt>, <tt>threshold</tt>, <tt>flap</tt>, <tt>gravity</tt>,
+ * <tt>elitism</tt>, <tt>selection</tt>, <tt>crossover</tt>, <tt>courses</tt> and <tt>max-ticks</tt>.
+ * <p>
+ * Every job simulates on a single thread of a pool with {@link #jobs} threads, so a sweep uses every core without
+ * oversubscribing them, and all jobs share the seed, so they fly the same courses. The jobs are compared by successive
+ * halving: after {@link #minGenerations}, and after <tt>eta</tt> times as many generations at every further comparison,
+ * only the best <tt>1 / eta</tt> of the jobs by their mean score continue. The comparisons wait for all jobs, so the
+ * results do not depend on the timing of the threads. Every finished segment of a job is written as a line of CSV.
+ * A job whose settings cannot be combined is written as <tt>failed</tt> and the others go on without it.
+ */
+class Sweep {
+
+    private static final String[] PARAMETERS = {"birds", "mutation", "threshold", "flap", "gravity", "elitism",
+            "selection", "crossover", "courses", "max-ticks"};
+
+    /**
+     * Ticks between two checks of the CPU time of a job
+     */
+    private static final int BUDGET_TICKS = 4096;
+
+    private final Map<String, String[]> values = new LinkedHashMap<>();
+    private boolean random;
+    private int samples = 20,
+            generations = 100,
+            minGenerations = 10,
+            eta = 3,
+            jobs = Runtime.getRuntime().availableProcessors();
+    private float cpuSeconds;
+    private long seed = 42;
+
+    /**
+     * @throws IOException If the spec could not be read or contains an invalid line
+     */
+    static Sweep read(File file) throws IOException {
+        Sweep sweep = new Sweep();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                String[] words = line.trim().split("\\s+");
+                if (words[0].isEmpty()) continue;
+                try {
+                    sweep.set(words);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + ":" + number + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        if (!sweep.random)
+            for (String[] list : sweep.values.values())
+                for (String value : list)
+                    if (value.contains(".."))
+                        throw new IOException(file + ": ranges need a random search");
+        return sweep;
+    }
+
+    private void set(String[] words) {
+        if (words.length < 2) throw new IllegalArgumentException(words[0] + " needs a value");
+        switch (words[0]) {
+            case "search":
+                if (!words[1].equals("grid") && !words[1].equals("random"))
+                    throw new IllegalArgumentException("Unknown search " + words[1]);
+                random = words[1].equals("random");
+                return;
+            case "samples":
+                samples = Integer.parseInt(words[1]);
+                return;
+            case "generations":
+                generations = Integer.parseInt(words[1]);
+                return;
+            case "min-generations":
+                minGenerations = Math.max(1, Integer.parseInt(words[1]));
+                return;
+            case "eta":
+                eta = Math.max(2, Integer.parseInt(words[1]));
+                return;
+            case "cpu-seconds":
+                cpuSeconds = Float.parseFloat(words[1]);
+                return;
+            case "jobs":
+                jobs = Math.max(1, Integer.parseInt(words[1]));
+                return;
+            case "seed":
+                seed = Long.parseLong(words[1]);
+                return;
+        }
+        for (String parameter : PARAMETERS)
+            if (parameter.equals(words[0])) {
+                String[] list = new String[words.length - 1];
+                System.arraycopy(words, 1, list, 0, list.length);
+                // Parse every value once, so a typo fails before any job runs
+                for (String value : list)
+                    for (String bound : value.split("\\.\\.", 2))
+                        apply(new FlappyConfiguration(), parameter, bound);
+                values.put(parameter, list);
+                return;
+            }
+        throw new IllegalArgumentException("Unknown setting " + words[0]);
+    }
+
+    /**
+     * @return The settings of every job: the whole grid, or {@link #samples} random picks from the lists and ranges
+     */
+    private List<String[]> settings() {
+        List<String[]> settings = new ArrayList<>();
+        String[][] lists = values.values().toArray(new String[0][]);
+        if (random) {
+            Random random = new Random(seed);
+            for (int n = 0; n < samples; n++) {
+                String[] picked = new String[lists.length];
+                for (int p = 0; p < lists.length; p++)
+                    picked[p] = pick(lists[p][random.nextInt(lists[p].length)], random);
+                settings.add(picked);
+            }
+        } else {
+            int[] digits = new int[lists.length];
+            while (true) {
+                String[] picked = new String[lists.length];
+                for (int p = 0; p < lists.length; p++)
+                    picked[p] = lists[p][digits[p]];
+                settings.add(picked);
+                int p = lists.length - 1;
+                while (p >= 0 && ++digits[p] == lists[p].length) digits[p--] = 0;
+                if (p < 0) break;
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * @return The value, or a uniform sample of a range, rounded if both bounds are integers
+     */
+    private static String pick(String value, Random random) {
+        int range = value.indexOf("..");
+        if (range < 0) return value;
+        String low = value.substring(0, range),
+                high = value.substring(range + 2);
+        double min = Double.parseDouble(low),
+                max = Double.parseDouble(high);
+        if (!low.contains(".") && !high.contains("."))
+            return Long.toString(Math.round(min + random.nextDouble() * (max - min)));
+        return String.format(Locale.ROOT, "%.4f", min + random.nextDouble() * (max - min));
+    }
+
+    private static void apply(FlappyConfiguration config, String parameter, String value) {
+        switch (parameter) {
+            case "birds":
+                config.birdCount = Integer.parseInt(value);
+                break;
+            case "mutation":
+                config.mutation = Float.parseFloat(value);
+                break;
+            case "threshold":
+                config.breedingThreshold = Double.parseDouble(value);
+                break;
+            case "flap":
+                config.flapImpulse = Float.parseFloat(value);
+                break;
+            case "gravity":
+                config.gravity = Float.parseFloat(value);
+                break;
+            case "elitism":
+                config.elitism = Integer.parseInt(value);
+                break;
+            case "selection":
+                config.selection = Selection.valueOf(value.toUpperCase(Locale.ROOT));
+                break;
+            case "crossover":
+                config.crossover = Crossover.valueOf(value.toUpperCase(Locale.ROOT));
+                break;
+            case "courses":
+                config.courses = Integer.parseInt(value);
+                break;
+            case "max-ticks":
+                config.maxTicks = Integer.parseInt(value);
+                break;
+        }
+    }
+
+    /**
+     * Runs the sweep and streams the segments of the jobs to a CSV file
+     *
+     * @throws IOException If the results could not be written
+     */
+    void run(File results) throws IOException, InterruptedException {
+        String[] parameters = values.keySet().toArray(new String[0]);
+        List<Job> active = new ArrayList<>();
+        for (String[] settings : settings())
+            active.add(new Job(active.size(), parameters, settings));
+        System.out.println(active.size() + " jobs on " + jobs + " threads");
+
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try (PrintWriter out = new PrintWriter(new FileWriter(results))) {
+            out.print("job,status,generations,mean_score,best_score,cpu_seconds");
+            for (String parameter : parameters)
+                out.print("," + parameter);
+            out.println();
+            out.flush();
+
+            int rung = minGenerations;
+            while (!active.isEmpty()) {
+                int target = Math.min(rung, generations);
+                List<Future<?>> segments = new ArrayList<>();
+                for (Job job : active)
+                    segments.add(pool.submit(() -> {
+                        job.run(target, (long) (cpuSeconds * 1e9));
+                        job.write(out, job.failed ? "failed" : job.generations >= generations ? "finished" : job.exhausted ? "budget" : "running");
+                    }));
+                for (Future<?> segment : segments)
+                    try {
+                        segment.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("A job failed", e.getCause());
+                    }
+
+                // Only the best jobs that are neither finished nor out of budget continue
+                active.removeIf(job -> job.failed);
+                active.sort((a, b) -> a.mean() != b.mean() ? Double.compare(b.mean(), a.mean()) : Integer.compare(a.id, b.id));
+                int keep = target >= generations ? 0 : (active.size() + eta - 1) / eta;
+                List<Job> continued = new ArrayList<>();
+                for (Job job : active) {
+                    if (continued.size() < keep && !job.exhausted) continued.add(job);
+                    else {
+                        if (target < generations && !job.exhausted) job.write(out, "stopped");
+                        job.dispose();
+                    }
+                }
+                if (continued.isEmpty() && !active.isEmpty()) {
+                    Job best = active.get(0);
+                    System.out.printf("Best job %d: %.2f P mean, %d P best after %d generations%n", best.id, best.mean(), best.bestScore, best.generations);
+                }
+                active = continued;
+                rung *= eta;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * A training run with one configuration, continued segment by segment
+     */
+    private class Job {
+
+        private final int id;
+        private final String[] parameters,
+                settings;
+        private FlappySimulation simulation;
+        private int generations,
+                bestScore;
+        private long scoreSum,
+                cpuNanos;
+        private boolean exhausted,
+                failed;
+
+        Job(int id, String[] parameters, String[] settings) {
+            this.id = id;
+            this.parameters = parameters;
+            this.settings = settings;
+        }
+
+        /**
+         * Trains until the job has flown <tt>target</tt> generations or used up its CPU time
+         */
+        void run(int target, long budget) {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long start = threads.getCurrentThreadCpuTime();
+            if (simulation == null) {
+                FlappyConfiguration config = new FlappyConfiguration();
+                config.threads = 1;
+                config.seed = seed;
+                for (int p = 0; p < parameters.length; p++)
+                    apply(config, parameters[p], settings[p]);
+                try {
+                    simulation = new FlappySimulation(config);
+                } catch (IllegalArgumentException e) {
+                    // Settings that cannot be combined only end this job, not the whole sweep
+                    System.out.println("Job " + id + " failed: " + e.getMessage());
+                    failed = true;
+                    return;
+                }
+            }
+            // The budget is checked within a generation as well, since a good bird may fly forever without max-ticks
+            long ticks = 0;
+            while (generations < target && !exhausted) {
+                if (simulation.step()) {
+                    generations++;
+                    scoreSum += simulation.getLastScore();
+                    bestScore = Math.max(bestScore, simulation.getLastScore());
+                }
+                if (budget > 0 && ++ticks % BUDGET_TICKS == 0)
+                    exhausted = cpuNanos + threads.getCurrentThreadCpuTime() - start >= budget;
+            }
+            cpuNanos += threads.getCurrentThreadCpuTime() - start;
+        }
+
+        double mean() {
+            return generations > 0 ? (double) scoreSum / generations : 0;
+        }
+
+        void write(PrintWriter out, String status) {
+            StringBuilder line = new StringBuilder();
+            line.append(id).append(',').append(status).append(',').append(generations)
+                    .append(',').append(String.format(Locale.ROOT, "%.3f", mean())).append(',').append(bestScore)
+                    .append(',').append(String.format(Locale.ROOT, "%.3f", cpuNanos / 1e9));
+            for (String setting : settings)
+                line.append(',').append(setting);
+            synchronized (out) {
+                out.println(line);
+                out.flush();
+            }
+        }
+
+        void dispose() {
+            if (simulation != null) simulation.dispose();
+            simulation = null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package de.tomjanke.medt.vector;
+
+import de.tomjanke.medt.ForwardKernel;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ForwardKernel} on the Java Vector API: every lane is a bird, so a vector computes a neuron of as many birds
+ * as the CPU has float lanes. The sum stays in a register over all inputs instead of being stored after every input,
+ * and it is a multiplication and an addition per input like the scalar path, not a fused multiply-add,
+ * so the results are identical.
+ */
+public class VectorKernel implements ForwardKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void neuron(float[] neurons, int n, int previous, float[] weights, int weight, int inputs, int count, int from, int to) {
+        int bird = from,
+                bound = from + SPECIES.loopBound(to - from);
+        for (; bird < bound; bird += SPECIES.length()) {
+            FloatVector sum = FloatVector.zero(SPECIES);
+            for (int input = 0; input < inputs; input++) {
+                FloatVector value = FloatVector.fromArray(SPECIES, neurons, previous + input * count + bird),
+                        factor = FloatVector.fromArray(SPECIES, weights, weight + input * count + bird);
+                sum = sum.add(value.mul(factor));
+            }
+            sum.intoArray(neurons, n + bird);
+        }
+
+        // The birds that do not fill a whole vector
+        for (; bird < to; bird++) {
+            float sum = 0;
+            for (int input = 0; input < inputs; input++)
+                sum += neurons[previous + input * count + bird] * weights[weight + input * count + bird];
+            neurons[n + bird] = sum;
+        }
+    }
+}